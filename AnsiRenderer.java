@@ -0,0 +1,183 @@
+import java.util.Arrays;
+
+/**
+ * Draws a game on an ANSI terminal for CommandLineView, through a viewport that fits the terminal, so boards of any
+ * size can be played without the terminal scrolling.
+ * The whole viewport is drawn only when it first appears or moves; after a move, only the tiles the move changed are
+ * drawn, each with a cursor positioning sequence, so a move costs time in proportion to the tiles it changed rather
+ * than to the size of the board. Everything is built in one reusable byte buffer, which the view writes in one go.
+ * Screen layout: the bordered viewport, then a status line, then the prompt.
+ * @author Rachel Wiens
+ */
+class AnsiRenderer {
+	private static final byte[] TILE_CHARS = new byte[Tile.values().length];
+	static {
+		for( Tile tile : Tile.values() ) TILE_CHARS[tile.ordinal()] = (byte)tile.toString().charAt(0);
+	}
+	private static final int CHROME_ROWS = 4;		// top and bottom borders, status line and prompt
+
+	private final Minesweeper game;
+	private final int viewHeight;		// rows of tiles shown
+	private final int viewLength;		// columns of tiles shown
+	private int top;		// first row shown
+	private int left;		// first column shown
+	private boolean redraw = true;		// the whole viewport has to be drawn
+	private byte[] buffer = new byte[4096];
+	private int size;
+
+	/**
+	 * @param game
+	 * @param rows rows in the terminal
+	 * @param columns columns in the terminal
+	 */
+	AnsiRenderer(Minesweeper game, int rows, int columns){
+		this.game = game;
+		viewHeight = Math.max(1, Math.min(game.getBoardHeight(), rows - CHROME_ROWS));
+		viewLength = Math.max(1, Math.min(game.getBoardLength(), columns - 2));
+	}
+
+	/**
+	 * Draw the whole viewport again at the next render, e.g. for a new game.
+	 */
+	void redraw(){
+		redraw = true;
+	}
+
+	/**
+	 * Move the viewport so that the tile at row, col is shown, centring it if the viewport has to move.
+	 */
+	void follow(int row, int col){
+		if( row < 0 || col < 0 || row >= game.getBoardHeight() || col >= game.getBoardLength() ) return;
+		if( row < top || row >= top + viewHeight ) scrollTo(row - viewHeight/2, left);
+		if( col < left || col >= left + viewLength ) scrollTo(top, col - viewLength/2);
+	}
+
+	/**
+	 * Move the viewport by half its size in the given direction: 'w' up, 's' down, 'a' left, 'd' right.
+	 * @return true if the direction was one of those
+	 */
+	boolean scroll(char direction){
+		switch( direction ){
+			case 'w': scrollTo(top - viewHeight/2, left); return true;
+			case 's': scrollTo(top + viewHeight/2, left); return true;
+			case 'a': scrollTo(top, left - viewLength/2); return true;
+			case 'd': scrollTo(top, left + viewLength/2); return true;
+			default: return false;
+		}
+	}
+
+	private void scrollTo(int row, int col){
+		row = Math.max(0, Math.min(row, game.getBoardHeight() - viewHeight));
+		col = Math.max(0, Math.min(col, game.getBoardLength() - viewLength));
+		if( row != top || col != left ) redraw = true;
+		top = row;
+		left = col;
+	}
+
+	/**
+	 * Add the drawing of move to the buffer: the changed tiles that are in the viewport, or the whole viewport if it moved.
+	 * @param move the tiles changed since the last render
+	 */
+	void render(MoveDelta move){
+		if( redraw ){
+			drawViewport();
+			redraw = false;
+			return;
+		}
+		for( int k=0; k<move.size(); k++){
+			int row = move.getRow(k) - top;
+			int col = move.getCol(k) - left;
+			if( row < 0 || col < 0 || row >= viewHeight || col >= viewLength ) continue;
+			moveCursor(row + 2, col + 2);		// inside the border; ANSI rows and columns count from 1
+			put(TILE_CHARS[move.getTileCode(k)]);
+		}
+	}
+
+	/**
+	 * Add text to the status line below the board, replacing what was there.
+	 */
+	void status(String text){
+		moveCursor(viewHeight + 3, 1);
+		put("\u001b[K");
+		put(text);
+	}
+
+	/**
+	 * Add the prompt on the last line, leaving the cursor after it.
+	 */
+	void prompt(String text){
+		moveCursor(viewHeight + 4, 1);
+		put("\u001b[K");
+		put(text);
+	}
+
+	/**
+	 * Leave the cursor below everything drawn, e.g. when the game is over.
+	 */
+	void finish(){
+		moveCursor(viewHeight + 4, 1);
+		put("\u001b[K");
+	}
+
+	byte[] getBuffer(){
+		return buffer;
+	}
+
+	/**
+	 * Number of bytes in the buffer since the last clear.
+	 */
+	int getSize(){
+		return size;
+	}
+
+	void clear(){
+		size = 0;
+	}
+
+	private void drawViewport(){
+		put("\u001b[H\u001b[2J");		// home and clear the screen
+		putBorder();
+		for( int i=0; i<viewHeight; i++){
+			put((byte)'|');
+			for( int j=0; j<viewLength; j++){
+				put(TILE_CHARS[game.getTile(top + i, left + j).ordinal()]);
+			}
+			put("|\r\n");
+		}
+		putBorder();
+		status(String.format("rows %d-%d of %d, columns %d-%d of %d (w/a/s/d to scroll)", top + 1, top + viewHeight, game.getBoardHeight(),
+				left + 1, left + viewLength, game.getBoardLength()));
+	}
+
+	private void putBorder(){
+		put((byte)'+');
+		for( int j=0; j<viewLength; j++) put((byte)'-');
+		put("+\r\n");
+	}
+
+	/**
+	 * Add the sequence that moves the cursor to row, col (counting from 1).
+	 */
+	private void moveCursor(int row, int col){
+		put((byte)0x1b);
+		put((byte)'[');
+		putNumber(row);
+		put((byte)';');
+		putNumber(col);
+		put((byte)'H');
+	}
+
+	private void putNumber(int value){
+		if( value >= 10 ) putNumber(value / 10);
+		put((byte)('0' + value % 10));
+	}
+
+	private void put(String text){
+		for( int k=0; k<text.length(); k++) put((byte)text.charAt(k));
+	}
+
+	private void put(byte b){
+		if( size == buffer.length ) buffer = Arrays.copyOf(buffer, size*2);
+		buffer[size++] = b;
+	}
+}
@@ -1,39 +1,329 @@
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
 /**
  * Minesweeper board
+ * Tiles are packed 16 to a long, 4 bits each, storing the tile's ordinal (UNKNOWN is 0 so a cleared board is all zeros).
+ * Mines are stored separately as a bitset, 64 to a long, along with the number of mines bordering each tile.
+ * All three arrays use the flat index i*length + j. They are held by a BoardStorage: arrays on the heap unless the
+ * board is given a MappedStorage, as Minesweeper.open does to play a board kept in a file.
  * @author Rachel Wiens
  */
 public class Board {
+	private static final Tile[] TILES = Tile.values();
+	private static final long TILE_MASK = 0xFL;
+	static final int CHUNK_SHIFT = 7;		// snapshots hold the tiles in chunks of 128 (8 longs)
+	private static final int CHUNK_WORDS = 1 << (CHUNK_SHIFT - 4);
+	
 	private final int height;
 	private final int length;
 	private final int totalMines;
-	private Tile[][] board;
+	private final int tileWords;
+	private final int mineWords;
+	private final BoardStorage storage;		// the packed tiles, the mine bits and the neighbour counts, maintained by setMine
+	private long seed;		// seed of the last placeMines
 	
 	public Board(int h, int l, int mines){
+		this(h, l, mines, null);
+	}
+	
+	/**
+	 * Board whose arrays are held by storage, which must be the right size for it, or on the heap if storage is null.
+	 */
+	Board(int h, int l, int mines, BoardStorage storage){
 		height = h;
 		length = l;
 		totalMines = mines;
 		
-		board = new Tile[height][length];
-		clearBoard();				//initialize board to unknowns 
+		long cells = (long)height*length;
+		if( cells > Integer.MAX_VALUE ) throw new IllegalArgumentException("Board is too large: " + height + "x" + length);
+		tileWords = (int)((cells+15) >>> 4);
+		mineWords = (int)((cells+63) >>> 6);
+		this.storage = storage == null ? new HeapStorage(cells) : storage;
 	}
 	
+	/**
+	 * Set every tile back to UNKNOWN. Mines are left in place.
+	 */
 	public void clearBoard(){
-		for( int i=0; i<height; i++){
-			for(int j=0; j<length; j++){
-				board[i][j]=Tile.UNKNOWN;
-			}
-		}
+		storage.clearTiles();
+	}
+	
+	/**
+	 * Remove all mines from the board.
+	 */
+	public void clearMines(){
+		storage.clearMines();
+	}
+	
+	public int getHeight(){
+		return height;
+	}
+	
+	public int getLength(){
+		return length;
+	}
+	
+	public int getTotalMines(){
+		return totalMines;
+	}
+	
+	/**
+	 * Flat index of the tile at row i, column j.
+	 */
+	public int index(int i, int j){
+		return i*length + j;
 	}
 	
 	public void setTile(int i, int j, Tile t){
-		board[i][j] = t;
+		setTile(index(i, j), t);
+	}
+	
+	public void setTile(int index, Tile t){
+		int word = index >>> 4;
+		int shift = (index & 15) << 2;
+		storage.setTiles(word, (storage.getTiles(word) & ~(TILE_MASK << shift)) | ((long)t.ordinal() << shift));
 	}
 	
 	public Tile getTile(int i, int j){
-		return board[i][j];
+		return getTile(index(i, j));
 	}
 	
+	public Tile getTile(int index){
+		return TILES[(int)(storage.getTiles(index >>> 4) >>> ((index & 15) << 2) & TILE_MASK)];
+	}
+	
+	/**
+	 * Atomically change the tile at index from expected to t, by compare-and-set on the long holding it, so that threads
+	 * changing other tiles packed into the same long do not lose each other's writes.
+	 * Tiles changed this way must only be read with getTileVolatile, or after the writing threads have been joined.
+	 * @return true if the tile was expected and is now t, false if it was something else
+	 */
+	public boolean compareAndSetTile(int index, Tile expected, Tile t){
+		int word = index >>> 4;
+		int shift = (index & 15) << 2;
+		while( true ){
+			long current = storage.getTilesVolatile(word);
+			if( (current >>> shift & TILE_MASK) != expected.ordinal() ) return false;
+			long next = (current & ~(TILE_MASK << shift)) | ((long)t.ordinal() << shift);
+			if( storage.compareAndSetTiles(word, current, next) ) return true;		// otherwise another tile in the word changed, so try again
+		}
+	}
+	
+	/**
+	 * Read the tile at index with volatile semantics, for tiles changed by compareAndSetTile in other threads.
+	 */
+	public Tile getTileVolatile(int index){
+		return TILES[(int)(storage.getTilesVolatile(index >>> 4) >>> ((index & 15) << 2) & TILE_MASK)];
+	}
+	
+	public boolean isMine(int i, int j){
+		return isMine(index(i, j));
+	}
+	
+	public boolean isMine(int index){
+		return (storage.getMines(index >>> 6) & (1L << index)) != 0;
+	}
+	
+	/**
+	 * Remove all mines and place getTotalMines() mines at random, using Floyd's sampling over the flat indices of every tile.
+	 * Every layout is equally likely and exactly getTotalMines() random numbers are drawn from seed, however dense the board is.
+	 * This is for boards placed before the first move is known, as BoardPool's are; moveMine then clears the first move.
+	 * @param seed
+	 */
+	public void placeMines(long seed){
+		clearMines();
+		this.seed = seed;
+		SplittableRandom random = new SplittableRandom(seed);
+		int cells = height*length;
+		for( int j=cells-totalMines; j<cells; j++){
+			int index = random.nextInt(j+1);
+			setMine(isMine(index) ? j : index);		// already chosen, so take j instead (which cannot have been chosen yet)
+		}
+	}
+	
+	/**
+	 * Remove all mines and place getTotalMines() mines at random over every tile except start, using Floyd's sampling over
+	 * the flat indices of the other tiles. Every layout without a mine on start is equally likely, and exactly
+	 * getTotalMines() random numbers are drawn from seed.
+	 * @param seed
+	 * @param start flat index of the tile to keep free of mines
+	 */
+	public void placeMines(long seed, int start){
+		clearMines();
+		this.seed = seed;
+		SplittableRandom random = new SplittableRandom(seed);
+		int candidates = height*length - 1;		// every tile except start
+		for( int j=candidates-totalMines; j<candidates; j++){
+			int index = random.nextInt(j+1);
+			if( index >= start ) index++;		// skip over start
+			if( isMine(index) ) index = (j >= start) ? j+1 : j;		// already chosen, so take j instead (which cannot have been chosen yet)
+			setMine(index);
+		}
+	}
+	
+	/**
+	 * Seed the mines were last placed from by placeMines.
+	 * @return long
+	 */
+	public long getSeed(){
+		return seed;
+	}
+	
+	/**
+	 * Move the mine at index to a tile without a mine, chosen uniformly at random with a generator split from the seed
+	 * of the last placeMines, so the same seed and index always give the same layout. Does nothing if there is no mine
+	 * at index. After placeMines(seed), every layout without a mine at index is then equally likely.
+	 * There must be at least one tile without a mine.
+	 */
+	public void moveMine(int index){
+		if( !isMine(index) ) return;
+		int cells = height*length;
+		int skip = new SplittableRandom(seed).split().nextInt(cells - totalMines);		// free tiles to pass over
+		int word = 0;
+		long free = ~storage.getMines(0);
+		while( true ){
+			if( word == mineWords - 1 && (cells & 63) != 0 ) free &= (1L << cells) - 1;		// bits past the last tile
+			int count = Long.bitCount(free);
+			if( skip < count ) break;
+			skip -= count;
+			free = ~storage.getMines(++word);
+		}
+		for( ; skip>0; skip--) free &= free - 1;
+		storage.setMines(index >>> 6, storage.getMines(index >>> 6) & ~(1L << index));
+		addNeighbourMines(index, -1);
+		setMine((word << 6) + Long.numberOfTrailingZeros(free));
+	}
+	
+	/**
+	 * Place a mine at index and add it to the neighbour count of every tile around it.
+	 * Does nothing if there is already a mine there.
+	 */
+	public void setMine(int index){
+		if( isMine(index) ) return;
+		storage.setMines(index >>> 6, storage.getMines(index >>> 6) | (1L << index));
+		addNeighbourMines(index, 1);
+	}
+	
+	/**
+	 * Add delta to the neighbour count of every tile in the 3x3 neighbourhood of index.
+	 */
+	private void addNeighbourMines(int index, int delta){
+		int row = index / length;
+		int col = index - row*length;
+		int lastRow = Math.min(row+1, height-1);
+		int firstCol = Math.max(col-1, 0);
+		int lastCol = Math.min(col+1, length-1);
+		for( int k=Math.max(row-1, 0); k<=lastRow; k++){
+			int rowStart = k*length;
+			for( int l=firstCol; l<=lastCol; l++){
+				storage.addNeighbourMines(rowStart+l, delta);
+			}
+		}
+	}
+	
+	/**
+	 * Number of mines in the 3x3 neighbourhood of the tile at index, including the tile itself.
+	 */
+	public int getNeighbourMines(int index){
+		return storage.getNeighbourMines(index);
+	}
+	
+	/**
+	 * Copy the visible tiles of other, which must be the same size, onto this board. Mines are left in place.
+	 */
+	public void copyTiles(Board other){
+		for( int word=0; word<tileWords; word++) storage.setTiles(word, other.storage.getTiles(word));
+	}
+	
+	/**
+	 * Copy the tiles into chunks for a snapshot, sharing with previous every chunk that is not marked in changed.
+	 * A chunk is never written once it is in a snapshot, so snapshots can share them freely.
+	 * @param previous the chunks of an earlier snapshot of this board, or null to copy every chunk
+	 * @param changed bitset of the chunks changed since previous was taken
+	 * @return long[][]
+	 */
+	long[][] snapshotTiles(long[][] previous, long[] changed){
+		long[][] chunks = previous == null ? new long[(tileWords + CHUNK_WORDS - 1)/CHUNK_WORDS][] : previous.clone();
+		for( int c=0; c<chunks.length; c++){
+			if( chunks[c] == null || (changed[c >>> 6] & (1L << c)) != 0 ){
+				int from = c*CHUNK_WORDS;
+				long[] chunk = new long[Math.min(CHUNK_WORDS, tileWords - from)];
+				for( int w=0; w<chunk.length; w++) chunk[w] = storage.getTiles(from + w);
+				chunks[c] = chunk;
+			}
+		}
+		return chunks;
+	}
+	
+	/**
+	 * Set the tiles to those of a snapshot, copying only the chunks that differ from current.
+	 * @param chunks the snapshot to restore
+	 * @param current the chunks of the snapshot the tiles were last taken or restored from, or null to copy every chunk
+	 * @param changed bitset of the chunks changed since current
+	 */
+	void restoreTiles(long[][] chunks, long[][] current, long[] changed){
+		for( int c=0; c<chunks.length; c++){
+			if( current == null || chunks[c] != current[c] || (changed[c >>> 6] & (1L << c)) != 0 ){
+				for( int w=0; w<chunks[c].length; w++) storage.setTiles(c*CHUNK_WORDS + w, chunks[c][w]);
+			}
+		}
+	}
+	
+	/**
+	 * The tile at index in chunks from snapshotTiles.
+	 */
+	static Tile getTile(long[][] chunks, int index){
+		return TILES[(int)(chunks[index >>> CHUNK_SHIFT][(index >>> 4) & (CHUNK_WORDS - 1)] >>> ((index & 15) << 2) & TILE_MASK)];
+	}
+	
+	/**
+	 * Approximate number of bytes used by the board's arrays.
+	 * @return long
+	 */
+	public long sizeInBytes(){
+		return sizeInBytes(height, length);
+	}
+	
+	/**
+	 * Approximate number of bytes used by the arrays of a board with h rows and l columns.
+	 * @return long
+	 */
+	public static long sizeInBytes(int h, int l){
+		long cells = (long)h*l;
+		return 8*((cells+15) >>> 4) + 8*((cells+63) >>> 6) + cells;
+	}
+	
+	/**
+	 * The board's packed arrays as buffers for a gathering write: the tiles and the mines as little-endian longs, then the
+	 * neighbour counts. On the heap the counts are wrapped and the longs copied with one bulk put each; a mapped board's
+	 * buffers are views of the mapping.
+	 * @return ByteBuffer[]
+	 */
+	public ByteBuffer[] toBuffers(){
+		return storage.toBuffers();
+	}
+	
+	/**
+	 * Replace the board's tiles, mines and neighbour counts with the ones in the buffers, as written from toBuffers()
+	 * of a board of the same size.
+	 */
+	public void load(ByteBuffer tileBytes, ByteBuffer mineBytes, ByteBuffer counts){
+		storage.load(tileBytes, mineBytes, counts);
+	}
+	
+	/**
+	 * Return a copy of the visible board as a 2D array of tiles.
+	 * This is O(height*length), so use getTile for single lookups.
+	 * @return Tile[][]
+	 */
 	public Tile[][] getBoard(){
+		Tile[][] board = new Tile[height][length];
+		for( int i=0; i<height; i++){
+			for(int j=0; j<length; j++){
+				board[i][j] = getTile(i, j);
+			}
+		}
 		return board;
 	}
 	
@@ -0,0 +1,149 @@
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+import javax.swing.JComponent;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.UIManager;
+
+/**
+ * Single component that paints the whole Minesweeper board, meant to sit in a JScrollPane.
+ * Only the tiles inside the clip are painted, and moves repaint only the rectangle around the tiles they changed,
+ * so painting and clicking cost the same no matter how big the board is.
+ * @author Rachel Wiens
+ */
+class BoardCanvas extends JComponent implements Scrollable {
+	private static final long serialVersionUID = 1L;
+	private static final int DEFAULT_TILE_SIZE = 50;
+	private static final int MAX_VISIBLE_TILES = 20;		// tiles shown in each direction before the board has to scroll
+
+	private Minesweeper game;
+	private int tileSize = DEFAULT_TILE_SIZE;
+	private boolean gameOver;		// true when every tile should be painted as disabled
+	private TileSprites sprites;		// tile images for the current tile size, screen scale and font
+
+	BoardCanvas(Minesweeper game){
+		this.game = game;
+		setFont(UIManager.getFont("Button.font"));
+		setOpaque(true);
+		setFocusable(true);
+	}
+
+	public int getTileSize(){
+		return tileSize;
+	}
+
+	public void setTileSize(int size){
+		tileSize = size;
+		revalidate();
+		repaint();
+	}
+
+	/**
+	 * Row of the tile at pixel y, or -1 if y is outside the board.
+	 */
+	public int rowAt(int y){
+		int row = y / tileSize;
+		return (y < 0 || row >= game.getBoardHeight()) ? -1 : row;
+	}
+
+	/**
+	 * Column of the tile at pixel x, or -1 if x is outside the board.
+	 */
+	public int colAt(int x){
+		int col = x / tileSize;
+		return (x < 0 || col >= game.getBoardLength()) ? -1 : col;
+	}
+
+	/**
+	 * Paint game instead, which must be the same size, from now on. All tiles are repainted.
+	 */
+	public void setGame(Minesweeper game){
+		this.game = game;
+		repaint();
+	}
+
+	public boolean isGameOver(){
+		return gameOver;
+	}
+
+	/**
+	 * Set whether the game is over. All tiles are repainted, since they all change to disabled (or back).
+	 */
+	public void setGameOver(boolean over){
+		gameOver = over;
+		repaint();
+	}
+
+	/**
+	 * Repaint the bounding rectangle of the tiles changed by a move.
+	 */
+	public void repaintMove(MoveDelta move){
+		if( move.size() == 0 ) return;
+		int firstRow = Integer.MAX_VALUE, lastRow = -1, firstCol = Integer.MAX_VALUE, lastCol = -1;
+		for( int k=0; k<move.size(); k++){
+			int row = move.getRow(k);
+			int col = move.getCol(k);
+			firstRow = Math.min(firstRow, row);
+			lastRow = Math.max(lastRow, row);
+			firstCol = Math.min(firstCol, col);
+			lastCol = Math.max(lastCol, col);
+		}
+		repaint(firstCol*tileSize, firstRow*tileSize, (lastCol-firstCol+1)*tileSize, (lastRow-firstRow+1)*tileSize);
+	}
+
+	@Override
+	public Dimension getPreferredSize(){
+		return new Dimension(game.getBoardLength()*tileSize, game.getBoardHeight()*tileSize);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g){
+		Graphics2D g2 = (Graphics2D)g.create();
+		Rectangle clip = g2.getClipBounds();
+		if( clip == null ) clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+		g2.setColor(getBackground());
+		g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		// only paint the tiles that intersect the clip
+		int firstRow = Math.max(clip.y / tileSize, 0);
+		int lastRow = Math.min((clip.y + clip.height - 1) / tileSize, game.getBoardHeight() - 1);
+		int firstCol = Math.max(clip.x / tileSize, 0);
+		int lastCol = Math.min((clip.x + clip.width - 1) / tileSize, game.getBoardLength() - 1);
+		double scale = TileSprites.scaleOf(g2);
+		if( sprites == null || !sprites.matches(tileSize, scale, getFont()) ){
+			sprites = new TileSprites(getGraphicsConfiguration(), tileSize, scale, getFont());
+		}
+		for( int row=firstRow; row<=lastRow; row++){
+			for( int col=firstCol; col<=lastCol; col++){
+				Tile tile = game.getTile(row, col);
+				sprites.draw(g2, tile, !gameOver && (tile == Tile.UNKNOWN || tile == Tile.FLAGGED), col*tileSize, row*tileSize);
+			}
+		}
+		g2.dispose();
+	}
+
+	public Dimension getPreferredScrollableViewportSize(){
+		return new Dimension(Math.min(game.getBoardLength(), MAX_VISIBLE_TILES)*tileSize, Math.min(game.getBoardHeight(), MAX_VISIBLE_TILES)*tileSize);
+	}
+
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction){
+		return tileSize;
+	}
+
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction){
+		int extent = (orientation == SwingConstants.VERTICAL) ? visibleRect.height : visibleRect.width;
+		return Math.max(tileSize, extent - tileSize);
+	}
+
+	public boolean getScrollableTracksViewportWidth(){
+		return false;
+	}
+
+	public boolean getScrollableTracksViewportHeight(){
+		return false;
+	}
+}
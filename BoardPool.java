@@ -0,0 +1,187 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of boards with their mines already placed, so that a game's first move does not have to place them.
+ * Boards are kept per size (length, height and mines). A size is added the first time a board of that size is taken, and
+ * from then on a low priority background thread keeps up to boardsPerSize of them ready, as long as every board the pool
+ * holds fits in maxBytes. take() never waits: if no board is ready it counts a miss and the game places its own mines.
+ * Boards that games have finished with are handed back with recycle() and refilled, so a steady stream of games does not allocate.
+ * @author Rachel Wiens
+ */
+public class BoardPool {
+
+	/**
+	 * Boards of one size.
+	 */
+	private static class Size {
+		private final int length;
+		private final int height;
+		private final int mines;
+		private final ArrayDeque<Board> ready = new ArrayDeque<Board>();		// mines placed, waiting to be taken
+		private final ArrayDeque<Board> spare = new ArrayDeque<Board>();		// recycled, waiting to be refilled
+
+		private Size(int length, int height, int mines){
+			this.length = length;
+			this.height = height;
+			this.mines = mines;
+		}
+	}
+
+	private final int boardsPerSize;
+	private final long maxBytes;
+	private final SplittableRandom seeds;		// only used by the refill thread
+	private final Map<String, Size> sizes = new HashMap<String, Size>();		// also the lock for everything below
+	private long bytesHeld;		// ready and spare boards, and the board being filled
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final Thread refiller;
+
+	public BoardPool(){
+		this(4, 16L << 20, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * @param boardsPerSize number of ready boards to keep for each size
+	 * @param maxBytes most memory the pool's boards may use, in bytes
+	 * @param seed the seeds of the pooled boards are drawn from this
+	 */
+	public BoardPool(int boardsPerSize, long maxBytes, long seed){
+		this.boardsPerSize = boardsPerSize;
+		this.maxBytes = maxBytes;
+		seeds = new SplittableRandom(seed);
+		refiller = new Thread(this::refill, "board-pool");
+		refiller.setDaemon(true);
+		refiller.setPriority(Thread.MIN_PRIORITY);
+		refiller.start();
+	}
+
+	/**
+	 * Take a board with its mines placed and every tile UNKNOWN, or return null if none is ready.
+	 * The board's seed is available from Board.getSeed().
+	 * @return Board or null
+	 */
+	public Board take(int length, int height, int mines){
+		synchronized( sizes ){
+			String key = key(length, height, mines);
+			Size size = sizes.get(key);
+			if( size == null ){		// first request for this size, so start filling it
+				sizes.put(key, new Size(length, height, mines));
+				sizes.notifyAll();
+				misses.incrementAndGet();
+				return null;
+			}
+			Board board = size.ready.poll();
+			if( board == null ){
+				misses.incrementAndGet();
+				return null;
+			}
+			bytesHeld -= board.sizeInBytes();
+			sizes.notifyAll();
+			hits.incrementAndGet();
+			return board;
+		}
+	}
+
+	/**
+	 * Give back a board that is no longer used, so the refill thread can reuse it. Boards the pool has no room for are dropped.
+	 * @param board
+	 */
+	public void recycle(Board board){
+		synchronized( sizes ){
+			Size size = sizes.get(key(board.getLength(), board.getHeight(), board.getTotalMines()));
+			if( size == null || size.ready.size() + size.spare.size() >= boardsPerSize || bytesHeld + board.sizeInBytes() > maxBytes ) return;
+			size.spare.add(board);
+			bytesHeld += board.sizeInBytes();
+			sizes.notifyAll();
+		}
+	}
+
+	/**
+	 * Number of take() calls that returned a board.
+	 */
+	public long getHits(){
+		return hits.get();
+	}
+
+	/**
+	 * Number of take() calls that returned null.
+	 */
+	public long getMisses(){
+		return misses.get();
+	}
+
+	/**
+	 * Bytes used by the boards the pool holds now.
+	 */
+	public long getBytesHeld(){
+		synchronized( sizes ){
+			return bytesHeld;
+		}
+	}
+
+	public long getMaxBytes(){
+		return maxBytes;
+	}
+
+	/**
+	 * Number of boards of the given size that are ready to take.
+	 */
+	public int getReady(int length, int height, int mines){
+		synchronized( sizes ){
+			Size size = sizes.get(key(length, height, mines));
+			return size == null ? 0 : size.ready.size();
+		}
+	}
+
+	/**
+	 * Stop the refill thread. take() keeps returning the boards that are already ready.
+	 */
+	public void shutdown(){
+		refiller.interrupt();
+	}
+
+	/**
+	 * Body of the refill thread: place the mines of one board at a time, outside the lock, for any size that is short.
+	 */
+	private void refill(){
+		try {
+			while( true ){
+				Size size;
+				Board board;
+				synchronized( sizes ){
+					while( (size = sizeToFill()) == null ) sizes.wait();
+					board = size.spare.poll();
+					if( board == null ) bytesHeld += Board.sizeInBytes(size.height, size.length);
+				}
+				if( board == null ) board = new Board(size.height, size.length, size.mines);
+				board.clearBoard();
+				board.placeMines(seeds.nextLong());
+				synchronized( sizes ){
+					size.ready.add(board);
+				}
+			}
+		} catch (InterruptedException e) {
+			// shut down
+		}
+	}
+
+	/**
+	 * A size with fewer than boardsPerSize ready boards and a spare board or room for a new one, or null.
+	 */
+	private Size sizeToFill(){
+		for( Size size : sizes.values() ){
+			if( size.ready.size() >= boardsPerSize ) continue;
+			if( !size.spare.isEmpty() || bytesHeld + Board.sizeInBytes(size.height, size.length) <= maxBytes ) return size;
+		}
+		return null;
+	}
+
+	private static String key(int length, int height, int mines){
+		return length + "x" + height + "/" + mines;
+	}
+}
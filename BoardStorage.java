@@ -0,0 +1,60 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Where a Board keeps its three arrays: the tiles packed 16 to a long, the mines as a bitset 64 to a long, and a byte
+ * for each tile counting the mines around it. Words and tiles are addressed by int, so a board has at most
+ * Integer.MAX_VALUE tiles whatever holds it.
+ * HeapStorage keeps them in arrays. MappedStorage keeps them in a memory-mapped file, laid out as Minesweeper.save
+ * writes them, so a game can be played straight from a file.
+ * @author Rachel Wiens
+ */
+interface BoardStorage {
+
+	/**
+	 * The 16 tiles packed in the word-th long, with the tile at index 16*word in the lowest 4 bits.
+	 */
+	long getTiles(int word);
+
+	void setTiles(int word, long tiles);
+
+	long getTilesVolatile(int word);
+
+	/**
+	 * Atomically set the word-th long of tiles to tiles if it is expected.
+	 * @return false if it was something else
+	 */
+	boolean compareAndSetTiles(int word, long expected, long tiles);
+
+	/**
+	 * Set every tile to 0, which is UNKNOWN.
+	 */
+	void clearTiles();
+
+	/**
+	 * The mine bits of tiles 64*word to 64*word + 63.
+	 */
+	long getMines(int word);
+
+	void setMines(int word, long mines);
+
+	int getNeighbourMines(int index);
+
+	void addNeighbourMines(int index, int delta);
+
+	/**
+	 * Remove every mine and set every neighbour count to 0.
+	 */
+	void clearMines();
+
+	/**
+	 * The tiles and the mines as little-endian longs, then the neighbour counts, for a gathering write.
+	 * @return ByteBuffer[]
+	 */
+	ByteBuffer[] toBuffers();
+
+	/**
+	 * Replace the tiles, mines and neighbour counts with the ones in the buffers, as written from toBuffers() of a
+	 * board of the same size.
+	 */
+	void load(ByteBuffer tiles, ByteBuffer mines, ByteBuffer counts);
+}
@@ -1,71 +1,342 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * View and Controller for playing Minesweeper via the command line
+ * Each view plays one game at a time on its own input and output, so GameServer can run one per connection.
+ * Everything printed for a move is collected in a buffer and written to the output with a single write.
+ * On an ANSI terminal, setTerminal switches to an AnsiRenderer, which shows a scrollable viewport of the board and
+ * redraws only the tiles each move changes. In batch mode a script of moves is played with nothing drawn until the end.
+ * If the game is undoable, entering u or r instead of a move undoes or redoes one. If the view was created with saving
+ * allowed, as the console's is, entering save and a file name saves the game, which can be played on later with the
+ * -load option. GameServer's views never allow it, since the file would be written by the server on a client's say-so.
  * @author Rachel Wiens 
  */
 public class CommandLineView {
+	private static final byte[] SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TILE_CHARS = new byte[Tile.values().length];		// the character printed for each tile, by ordinal
+	static {
+		for( Tile tile : Tile.values() ) TILE_CHARS[tile.ordinal()] = (byte)tile.toString().charAt(0);
+	}
+	
+	private final Minesweeper game;
+	private final BufferedReader reader;
+	private final OutputStream out;
+	private byte[] frame;		// the printed board. Only tiles changed by a move are rewritten.
+	private final int rowLength;		// number of chars in each row of the frame, including the line separator
+	private byte[] output = new byte[256];		// everything to print for the current move
+	private int outputSize;
+	private long movesMade;
+	private AnsiRenderer renderer;		// null to print the whole board after each move
+	private final boolean saving;		// the save command is allowed
+	
+	/**
+	 * Create a view of game that reads moves from reader and prints to out, without the save command.
+	 * @param game
+	 * @param reader
+	 * @param out
+	 */
+	public CommandLineView(Minesweeper game, BufferedReader reader, OutputStream out){
+		this(game, reader, out, false);
+	}
+	
+	/**
+	 * Create a view of game that reads moves from reader and prints to out.
+	 * @param game
+	 * @param reader
+	 * @param out
+	 * @param saving allow the save command, which writes any file the process can. Only for a player on this machine.
+	 */
+	public CommandLineView(Minesweeper game, BufferedReader reader, OutputStream out, boolean saving){
+		this.game = game;
+		this.reader = reader;
+		this.out = out;
+		this.saving = saving;
+		rowLength = game.getBoardLength() + 2 + SEPARATOR.length;
+	}
+	
+	/**
+	 * Play a game on the console.
+	 * Arguments: [-ansi] [-load file] [-batch file] [length height mines [seed]]. With -ansi the board is drawn for an
+	 * ANSI terminal of the size given by the LINES and COLUMNS environment variables, or 24x80. With -load the game saved
+	 * in file is played on instead of a new one. With -batch the moves are read from file, or from standard input if file
+	 * is -, and only the final board and a summary are printed.
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		boolean ansi = false;
+		String saved = null;
+		String script = null;
+		int first = 0;
+		while( first < args.length && args[first].startsWith("-") ){
+			if( args[first].equals("-ansi") ){
+				ansi = true;
+			} else if( args[first].equals("-load") && first + 1 < args.length ){
+				saved = args[++first];
+			} else if( args[first].equals("-batch") && first + 1 < args.length ){
+				script = args[++first];
+			} else {
+				break;
+			}
+			first++;
+		}
+		Minesweeper game;
+		if( saved != null ){
+			game = Minesweeper.load(Paths.get(saved));
+		} else if( args.length >= first + 4 ){
+			game = new Minesweeper(Integer.parseInt(args[first]), Integer.parseInt(args[first+1]), Integer.parseInt(args[first+2]), Long.parseLong(args[first+3]));
+		} else if( args.length >= first + 3 ){
+			game = new Minesweeper(Integer.parseInt(args[first]), Integer.parseInt(args[first+1]), Integer.parseInt(args[first+2]));
+		} else {
+			game = new Minesweeper();
+		}
+		if( script != null ){
+			playBatch(game, script, System.out);
+			return;
+		}
+		game.setUndoable(true);
+		CommandLineView view = new CommandLineView(game, new BufferedReader(new InputStreamReader(System.in)), System.out, true);
+		if( ansi ) view.setTerminal(environmentSize("LINES", 24), environmentSize("COLUMNS", 80));
+		view.println("Welcome to Minesweeper!");
+		view.playGame();
+	}
+	
+	/**
+	 * Play the moves in script on game without drawing anything, then print the final board and a summary to out.
+	 * @param game
+	 * @param script a file of moves, as read by MoveScript, or - for standard input
+	 * @param out
+	 * @throws IOException
+	 */
+	static void playBatch(Minesweeper game, String script, OutputStream out) throws IOException {
+		MoveScript moves = new MoveScript(game);
+		long start = System.nanoTime();
+		if( script.equals("-") ){
+			moves.play(Channels.newChannel(System.in));
+		} else {
+			moves.play(Paths.get(script));
+		}
+		long nanos = System.nanoTime() - start;
+		
+		String result = game.isGameWon() ? "won" : moves.isGameOver() ? "lost" : "in progress";
+		long actions = moves.getMovesApplied() + moves.getFlagsApplied();
+		out.write(drawBoard(game));
+		out.write(String.format("Game %s, seed %d, %d mines left%n", result, game.getSeed(), game.getMinesLeft()).getBytes(StandardCharsets.US_ASCII));
+		out.write(String.format("%d moves and %d flags applied, %d lines skipped, in %.3f s (%.0f moves/s)%n", 
+				moves.getMovesApplied(), moves.getFlagsApplied(), moves.getLinesSkipped(), nanos/1e9, actions/(nanos/1e9)).getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
 	
-	private static Minesweeper game;
+	private static int environmentSize(String name, int otherwise){
+		try {
+			return Integer.parseInt(System.getenv(name));
+		} catch (NumberFormatException e) {		// also thrown for null
+			return otherwise;
+		}
+	}
 	
-	public static void main(String[] args){
-		game = new Minesweeper();
-		System.out.println("Welcome to Minesweeper!");
-		playGame();
+	/**
+	 * Draw the board for an ANSI terminal of the given size from now on, through a viewport that fits in it.
+	 * Entering w, a, s or d instead of a move scrolls the viewport.
+	 * @param rows
+	 * @param columns
+	 */
+	public void setTerminal(int rows, int columns){
+		renderer = new AnsiRenderer(game, rows, columns);
 	}
 	
-	private static void printBoard(){
-		Tile[][] board = game.getBoard();
+	/**
+	 * Draw the whole board of game, with a border, as it is printed.
+	 * @return the drawn board, in ASCII
+	 */
+	static byte[] drawBoard(Minesweeper game){
 		int boardLength = game.getBoardLength();
 		int boardHeight = game.getBoardHeight();
+		int rowLength = boardLength + 2 + SEPARATOR.length;
 		
-		for( int j=0; j<boardLength; j++ ){ System.out.print("-"); }
-		System.out.println();
+		byte[] board = new byte[(boardHeight+2)*rowLength - 4];		// the top and bottom borders have no '|' characters
+		int position = 0;
+		Arrays.fill(board, position, position + boardLength, (byte)'-');
+		position += boardLength;
+		position = append(board, position, SEPARATOR);
 		for( int i=0; i<boardHeight; i++){
-			System.out.print("|");
+			board[position++] = '|';
 			for(int j=0; j<boardLength; j++){
-				System.out.print(board[i][j].toString());
-				
+				board[position++] = TILE_CHARS[game.getTile(i, j).ordinal()];
 			}
-			System.out.println("|");
+			board[position++] = '|';
+			position = append(board, position, SEPARATOR);
 		}
-		for( int j=0; j<boardLength; j++ ){ System.out.print("-"); }
-		System.out.println();
+		Arrays.fill(board, position, position + boardLength, (byte)'-');
+		position += boardLength;
+		append(board, position, SEPARATOR);
+		return board;
+	}
+	
+	private static int append(byte[] to, int position, byte[] bytes){
+		System.arraycopy(bytes, 0, to, position, bytes.length);
+		return position + bytes.length;
 	}
 	
-	private static void playGame(){
-		int x=-1;
-		int y=-1;
-		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));;
+	/**
+	 * Update the frame with the tiles changed by the last move.
+	 */
+	private void drawMove(){
+		MoveDelta move = game.getLastMove();
+		int headerLength = rowLength - 2;		// top border has no '|' characters
+		for( int k=0; k<move.size(); k++){
+			frame[headerLength + move.getRow(k)*rowLength + 1 + move.getCol(k)] = TILE_CHARS[move.getTileCode(k)];
+		}
+	}
+	
+	private void printBoard(){
+		print(frame, frame.length);
+	}
+	
+	private void printRenderer(){
+		print(renderer.getBuffer(), renderer.getSize());
+		renderer.clear();
+	}
+	
+	/**
+	 * Play the current game until it is won or lost, or the input ends.
+	 * @return false if the input ended before the game did
+	 * @throws IOException if the output cannot be written
+	 */
+	public boolean playGame() throws IOException {
+		if( renderer == null ){
+			frame = drawBoard(game);
+		} else {
+			renderer.redraw();
+		}
 		
-		do{
-			try {
+		boolean gameContinues = true;
+		while( gameContinues ){		// loops until a move ends the game
+			if( renderer == null ){
 				printBoard();
-				System.out.println("Move: ");
-				String moveString = reader.readLine();
+				println("Move: ");
+			} else {
+				renderer.render(game.getLastMove());
+				renderer.prompt("Move: ");
+				printRenderer();
+			}
+			flush();		// the board and the prompt go out in one write
+			String moveString;
+			try {
+				moveString = reader.readLine();
+			} catch (IOException e) {
+				moveString = null;
+			}
+			if( moveString == null ) return false;		// the player has gone
+			if( renderer != null && moveString.length() == 1 && renderer.scroll(moveString.charAt(0)) ){
+				continue;		// no move, just draw the new viewport
+			}
+			if( game.isUndoable() && (moveString.equals("u") || moveString.equals("r")) ){
+				if( moveString.equals("u") ? game.undo() : game.redo() ){
+					if( renderer == null ){
+						drawMove();
+					} else {
+						renderer.render(game.getLastMove());
+					}
+				}
+				continue;		// no move
+			}
+			if( saving && moveString.startsWith("save ") ){
+				String file = moveString.substring(5).trim();
+				try {
+					game.save(Paths.get(file));
+					message("Saved the game to " + file);
+				} catch (IOException | InvalidPathException e) {
+					message("Could not save the game: " + e.getMessage());
+				}
+				continue;		// no move
+			}
+			try {
 				String[] positions = moveString.split(" ");
 				if( positions.length<=1 ) positions = moveString.split(",");	// allow users to input either a comma or a space to seperate numbers
 				if( positions.length>=2 ){ 			// must have at least 2 numbers
-					x = Integer.parseInt(positions[0])-1;		// subtract 1 because our board starts counting at 0 and we expect the user to start counting at 1
-					y = Integer.parseInt(positions[1])-1;
+					int x = Integer.parseInt(positions[0])-1;		// subtract 1 because our board starts counting at 0 and we expect the user to start counting at 1
+					int y = Integer.parseInt(positions[1])-1;
+					gameContinues = makeMove(x,y);
 				}
-			} catch (IOException e) {
-				// do nothing
-				System.err.print(e.getMessage());
 			} catch (NumberFormatException e){
 				// could not parse string into integers
-				System.err.print(e.getMessage());
+				message(e.getMessage());
 			}
-		}while( game.makeMove(x,y) );		// loops until a valid move is able to be completed
+		}
 		
-		if(game.isGameWon()){
-			System.out.println("Congratulations! You won the game.");
+		String result = game.isGameWon() ? "Congratulations! You won the game." : "Oops! Sorry, you lose.";
+		if( renderer == null ){
+			println(result);
 		} else {
-			System.out.println("Oops! Sorry, you lose.");
+			renderer.render(game.getLastMove());
+			renderer.status(result);
+			renderer.finish();
+			printRenderer();
 		}
+		flush();
+		return true;
 	}
 	
+	/**
+	 * Show line below the board, or in the renderer's status line.
+	 */
+	private void message(String line){
+		if( renderer == null ){
+			println(line);
+		} else {
+			renderer.status(line);
+		}
+	}
+	
+	/**
+	 * Number of moves made through this view.
+	 */
+	public long getMovesMade(){
+		return movesMade;
+	}
+	
+	private boolean makeMove(int x, int y){
+		boolean gameContinues = game.makeMove(x, y);
+		movesMade++;
+		if( renderer == null ){
+			drawMove();
+		} else {
+			renderer.follow(x, y);
+		}
+		return gameContinues;
+	}
+	
+	/**
+	 * Add a line to the output, to be written by the next flush.
+	 */
+	void println(String line){
+		byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+		print(bytes, bytes.length);
+		print(SEPARATOR, SEPARATOR.length);
+	}
+	
+	private void print(byte[] bytes, int length){
+		if( outputSize + length > output.length ) output = Arrays.copyOf(output, Math.max(output.length*2, outputSize + length));
+		System.arraycopy(bytes, 0, output, outputSize, length);
+		outputSize += length;
+	}
+	
+	/**
+	 * Write everything printed since the last flush with one write.
+	 */
+	void flush() throws IOException {
+		out.write(output, 0, outputSize);
+		out.flush();
+		outputSize = 0;
+	}
 	
 }
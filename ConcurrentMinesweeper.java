@@ -0,0 +1,209 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minesweeper game that many players (threads) can play on at once, for a cooperative mode on one huge board.
+ * Tiles are changed with compare-and-set on the packed longs of the Board, so a tile is revealed or flagged by exactly
+ * one thread, and moves in different parts of the board never wait for each other. A flood fill claims each tile it
+ * reveals the same way, so fills from different threads can meet and cross without locks and so without deadlock.
+ * Counters are LongAdders, which threads update without contending.
+ * The mines are placed by the first move, under a lock that every move and flag takes until then; after that the mines
+ * and neighbour counts never change, and only the tiles are shared.
+ * The game is lost, for everyone, when any player reveals a mine, and won when every safe tile is revealed or flagged.
+ * @author Rachel Wiens
+ */
+public class ConcurrentMinesweeper {
+	private final int boardHeight;
+	private final int boardLength;
+	private final int numMines;
+	private final long seed;
+	private final Board board;
+	private final Object placement = new Object();		// held while the mines are placed by the first move
+	private volatile boolean minesPlaced;
+	private volatile boolean mineRevealed;
+	private final LongAdder flags = new LongAdder();
+	private final LongAdder safeTilesCleared = new LongAdder();		// safe tiles revealed or flagged. The game is won when this reaches the number of safe tiles.
+	private final LongAdder movesMade = new LongAdder();
+	private final ThreadLocal<int[][]> revealStacks = ThreadLocal.withInitial(() -> new int[][]{ new int[16] });		// each thread's flood fill stack
+
+	/**
+	 * Create a game whose mine layout is determined by seed and the first move, as for Minesweeper.
+	 * @param length
+	 * @param height
+	 * @param mines
+	 * @param seed
+	 */
+	public ConcurrentMinesweeper(int length, int height, int mines, long seed){
+		if( mines < 0 || mines >= (long)length*height ) throw new IllegalArgumentException("Number of mines must be between 0 and " + ((long)length*height - 1) + ": " + mines);
+		boardLength = length;
+		boardHeight = height;
+		numMines = mines;
+		this.seed = seed;
+		board = new Board(height, length, mines);
+	}
+
+	public int getBoardLength(){
+		return boardLength;
+	}
+
+	public int getBoardHeight(){
+		return boardHeight;
+	}
+
+	public int getNumMines(){
+		return numMines;
+	}
+
+	public long getSeed(){
+		return seed;
+	}
+
+	public Tile getTile(int i, int j){
+		return board.getTileVolatile(board.index(i, j));
+	}
+
+	/**
+	 * Return the estimated number of mines left unflagged, as for Minesweeper.
+	 */
+	public long getMinesLeft(){
+		return numMines - flags.sum();
+	}
+
+	/**
+	 * Number of moves that revealed at least one tile.
+	 */
+	public long getMovesMade(){
+		return movesMade.sum();
+	}
+
+	/**
+	 * True once every safe tile has been revealed or flagged. Only exact once the players have stopped moving.
+	 * @return boolean
+	 */
+	public boolean isGameWon(){
+		return safeTilesCleared.sum() == (long)boardHeight*boardLength - numMines;
+	}
+
+	/**
+	 * True once any player has revealed a mine.
+	 * @return boolean
+	 */
+	public boolean isGameLost(){
+		return mineRevealed;
+	}
+
+	/**
+	 * Reveal a tile and, if it is empty, its neighbours, as Minesweeper.makeMove does. Safe to call from any thread.
+	 * If another player reveals or flags the tile first, this does nothing.
+	 * @param i
+	 * @param j
+	 * @return false if this move revealed a mine or the game is won
+	 */
+	public boolean makeMove(int i, int j){
+		if( i<0 || j<0 || i>=boardHeight || j>=boardLength ) return true;		// outside bounds
+		if( !minesPlaced ) placeMines(i, j);
+		int index = board.index(i, j);
+		Tile tile = reveal(index);
+		if( tile == null ) return !isGameWon();		// someone else got there first
+		movesMade.increment();
+		if( tile == Tile.MINE ) return false;
+		long revealed = 1;
+		if( tile == Tile.EMPTY ) revealed += revealNeighbours(index);
+		safeTilesCleared.add(revealed);
+		return !isGameWon();
+	}
+
+	/**
+	 * Flag a tile if it is unknown, or unflag it if it is flagged, as Minesweeper.flag does. Safe to call from any thread.
+	 * @param i
+	 * @param j
+	 */
+	public void flag(int i, int j){
+		if( i<0 || j<0 || i>=boardHeight || j>=boardLength ) return;		// outside bounds
+		int index = board.index(i, j);
+		if( !minesPlaced ){
+			synchronized( placement ){
+				if( !minesPlaced ){		// whether the tile is safe is not known yet, so placeMines counts these flags
+					if( board.compareAndSetTile(index, Tile.UNKNOWN, Tile.FLAGGED) ){
+						flags.increment();
+					} else if( board.compareAndSetTile(index, Tile.FLAGGED, Tile.UNKNOWN) ){
+						flags.decrement();
+					}
+					return;
+				}
+			}
+		}
+		int safe = board.isMine(index) ? 0 : 1;
+		if( board.compareAndSetTile(index, Tile.UNKNOWN, Tile.FLAGGED) ){
+			flags.increment();
+			safeTilesCleared.add(safe);
+		} else if( board.compareAndSetTile(index, Tile.FLAGGED, Tile.UNKNOWN) ){
+			flags.decrement();
+			safeTilesCleared.add(-safe);
+		}
+	}
+
+	/**
+	 * Place the mines for a first move at startX, startY, unless another thread already has.
+	 */
+	private void placeMines(int startX, int startY){
+		synchronized( placement ){
+			if( minesPlaced ) return;
+			board.placeMines(seed, board.index(startX, startY));
+			long flaggedSafe = 0;		// tiles flagged before the mines were placed
+			if( flags.sum() != 0 ){
+				for( int index=0; index<boardHeight*boardLength; index++){
+					if( board.getTileVolatile(index) == Tile.FLAGGED && !board.isMine(index) ) flaggedSafe++;
+				}
+			}
+			safeTilesCleared.add(flaggedSafe);
+			minesPlaced = true;		// publishes the mines to every thread that reads it
+		}
+	}
+
+	/**
+	 * Claim the unknown tile at index and set it to its real value.
+	 * @return the tile, or null if it was not unknown
+	 */
+	private Tile reveal(int index){
+		Tile tile = board.isMine(index) ? Tile.MINE : Tile.getTile(board.getNeighbourMines(index));
+		if( !board.compareAndSetTile(index, Tile.UNKNOWN, tile) ) return null;
+		if( tile == Tile.MINE ) mineRevealed = true;
+		return tile;
+	}
+
+	/**
+	 * Reveal the tiles around the empty tile at index, and keep going through any empty tiles that are uncovered,
+	 * using this thread's stack. Tiles another thread claims first are left to that thread's fill.
+	 * @return number of tiles this thread revealed
+	 */
+	private long revealNeighbours(int start){
+		int[][] holder = revealStacks.get();
+		int[] stack = holder[0];
+		int top = 0;
+		long revealed = 0;
+		stack[top++] = start;
+		while( top > 0 ){
+			int index = stack[--top];
+			int row = index / boardLength;
+			int col = index - row*boardLength;
+			int lastRow = Math.min(row+1, boardHeight-1);
+			int firstCol = Math.max(col-1, 0);
+			int lastCol = Math.min(col+1, boardLength-1);
+			for( int k=Math.max(row-1, 0); k<=lastRow; k++){
+				for( int l=firstCol; l<=lastCol; l++){
+					int neighbour = board.index(k, l);
+					if( board.getTileVolatile(neighbour) != Tile.UNKNOWN ) continue;
+					Tile tile = reveal(neighbour);
+					if( tile == null ) continue;
+					revealed++;
+					if( tile == Tile.EMPTY ){
+						if( top == stack.length ) stack = holder[0] = Arrays.copyOf(stack, stack.length*2);
+						stack[top++] = neighbour;
+					}
+				}
+			}
+		}
+		return revealed;
+	}
+}
@@ -39,6 +39,14 @@ public class CountingTimer extends Timer {
 		return elapsedTime/1000;
 	}
 	
+	/**
+	 * Get the number of milliseconds since the timer started counting, or 0 if it is not running.
+	 * @return long
+	 */
+	public long getMillisSinceStart(){
+		return isRunning() ? System.currentTimeMillis() - startTime : 0;
+	}
+	
 	public String getTimeSinceStart(){
 		if( !this.isRunning() ){		// if timer is not running, 0 seconds have passed since it started.
 			return "00:00:00";
@@ -0,0 +1,300 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Minesweeper game logic for an endless board.
+ * The board is split into CHUNK_SIZE x CHUNK_SIZE chunks. A chunk's mines are generated from a hash of the world seed and
+ * the chunk's position the first time a move needs them, so memory depends on how much of the board has been explored,
+ * not on the size of the world. Rows and columns can be any int, including negative ones.
+ *
+ * At most maxCachedChunks chunks are kept fully loaded, in least recently used order. When a chunk is evicted its mines
+ * are dropped (they can be generated again from the seed) and only its revealed and flagged bits are kept. Chunks with
+ * nothing revealed or flagged are dropped completely, and fully resolved chunks with no flags share a single marker.
+ *
+ * There is no way to win an endless game; it is over when a mine is revealed.
+ * Note that flood fills are not bounded, so at very low mine densities a single move can open a very large region.
+ * @author Rachel Wiens
+ */
+public class EndlessMinesweeper {
+	public static final int CHUNK_BITS = 6;
+	public static final int CHUNK_SIZE = 1 << CHUNK_BITS;		// chunks are 64x64, so each row of a chunk is one long
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int MIN_CACHED_CHUNKS = 16;			// a reveal can touch up to 4 chunks, so keep well above that
+	private static final long[] RESOLVED = new long[0];			// revealed bits of an evicted chunk whose safe tiles are all revealed
+
+	private final long worldSeed;
+	private final int minesPerChunk;
+	private final LinkedHashMap<Long, Chunk> chunks;			// loaded chunks, in least recently used order
+	private final Map<Long, Chunk> evicted = new HashMap<Long, Chunk>();		// compressed chunks that have been explored
+	private boolean firstMove;		// true if the first move in the game has yet to be made.
+	private int firstRow;
+	private int firstCol;
+	private long tilesRevealed;
+	private int numFlags;
+	private long[] revealStack = new long[16];		// work stack of packed row/column pairs for revealNeighbours
+
+	/**
+	 * A loaded chunk. Row r of each array holds the bits for the CHUNK_SIZE tiles of that row, with column c in bit c.
+	 */
+	private static class Chunk {
+		long[] mines;
+		long[] revealed;
+		long[] flagged;		// null if nothing in the chunk is flagged
+
+		boolean isEmpty(){
+			if( flagged != null ) return false;
+			for( long row : revealed ) if( row != 0 ) return false;
+			return true;
+		}
+
+		boolean isResolved(){
+			if( flagged != null ) return false;
+			for( int r=0; r<CHUNK_SIZE; r++) if( (revealed[r] ^ mines[r]) != -1L ) return false;		// every safe tile and no mine revealed
+			return true;
+		}
+	}
+
+	public EndlessMinesweeper(long worldSeed){
+		this(worldSeed, CHUNK_SIZE*CHUNK_SIZE/5, 1024);		// same density as an intermediate game
+	}
+
+	/**
+	 * @param worldSeed seed the whole board is generated from
+	 * @param minesPerChunk number of mines in each chunk
+	 * @param maxCachedChunks number of chunks to keep loaded before evicting the least recently used one
+	 */
+	public EndlessMinesweeper(long worldSeed, int minesPerChunk, int maxCachedChunks){
+		if( minesPerChunk < 0 || minesPerChunk >= CHUNK_SIZE*CHUNK_SIZE ) throw new IllegalArgumentException("Mines per chunk must be between 0 and " + (CHUNK_SIZE*CHUNK_SIZE - 1) + ": " + minesPerChunk);
+		this.worldSeed = worldSeed;
+		this.minesPerChunk = minesPerChunk;
+		final int capacity = Math.max(maxCachedChunks, MIN_CACHED_CHUNKS);
+		chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest){
+				if( size() <= capacity ) return false;
+				evict(eldest.getKey(), eldest.getValue());
+				return true;
+			}
+		};
+		firstMove = true;
+	}
+
+	public long getWorldSeed(){
+		return worldSeed;
+	}
+
+	/**
+	 * Number of safe tiles revealed so far, which is the score of an endless game.
+	 * @return long
+	 */
+	public long getTilesRevealed(){
+		return tilesRevealed;
+	}
+
+	public int getNumFlags(){
+		return numFlags;
+	}
+
+	public int getLoadedChunks(){
+		return chunks.size();
+	}
+
+	public int getEvictedChunks(){
+		return evicted.size();
+	}
+
+	/**
+	 * Get the visible value of the tile at (row, col). Tiles in chunks that have never been explored are UNKNOWN.
+	 * @param row
+	 * @param col
+	 * @return Tile
+	 */
+	public Tile getTile(int row, int col){
+		long key = key(row >> CHUNK_BITS, col >> CHUNK_BITS);
+		if( !chunks.containsKey(key) && !evicted.containsKey(key) ) return Tile.UNKNOWN;
+		int r = row & CHUNK_MASK;
+		long bit = 1L << col;
+		Chunk chunk = getChunk(row >> CHUNK_BITS, col >> CHUNK_BITS);
+		if( chunk.flagged != null && (chunk.flagged[r] & bit) != 0 ) return Tile.FLAGGED;
+		if( (chunk.revealed[r] & bit) == 0 ) return Tile.UNKNOWN;
+		if( (chunk.mines[r] & bit) != 0 ) return Tile.MINE;
+		return Tile.getTile(countMines(row, col));
+	}
+
+	/**
+	 * Flag a tile if it is unknown.
+	 * Unflag a tile if it is flagged.
+	 * Do nothing otherwise
+	 * @param row
+	 * @param col
+	 */
+	public void flag(int row, int col){
+		Chunk chunk = getChunk(row >> CHUNK_BITS, col >> CHUNK_BITS);
+		int r = row & CHUNK_MASK;
+		long bit = 1L << col;
+		if( (chunk.revealed[r] & bit) != 0 ) return;
+		if( chunk.flagged == null ) chunk.flagged = new long[CHUNK_SIZE];
+		chunk.flagged[r] ^= bit;
+		numFlags += (chunk.flagged[r] & bit) != 0 ? 1 : -1;
+		if( numFlagsIn(chunk) == 0 ) chunk.flagged = null;
+	}
+
+	/**
+	 * Reveal a tile and its relevant neighbours.
+	 * If the tile is not unknown (ex. flagged, or already revealed) do nothing.
+	 * If a mine is revealed the game is over and false is returned. Otherwise return true.
+	 * @param row
+	 * @param col
+	 * @return boolean
+	 */
+	public boolean makeMove(int row, int col){
+		if( getTile(row, col) != Tile.UNKNOWN ) return true;		// before the first move is taken, since a flagged tile is not it
+		if( firstMove ){
+			// the first move can never be a mine, so the chunk it is in is generated without a mine there
+			firstRow = row;
+			firstCol = col;
+			firstMove = false;
+			Chunk chunk = chunks.get(key(row >> CHUNK_BITS, col >> CHUNK_BITS));
+			if( chunk != null ) chunk.mines = generateMines(row >> CHUNK_BITS, col >> CHUNK_BITS);		// loaded by a flag before the first move
+		}
+		int count = revealTile(row, col);
+		if( count < 0 ) return false;		// a mine has been hit
+		if( count == 0 ) revealNeighbours(row, col);
+		return true;
+	}
+
+	/**
+	 * Reveal an unknown tile.
+	 * @return the number of mines bordering the tile, or -1 if the tile is a mine
+	 */
+	private int revealTile(int row, int col){
+		int count = countMines(row, col);		// may load neighbouring chunks, so do this before holding on to this tile's chunk
+		Chunk chunk = getChunk(row >> CHUNK_BITS, col >> CHUNK_BITS);
+		int r = row & CHUNK_MASK;
+		long bit = 1L << col;
+		chunk.revealed[r] |= bit;
+		if( (chunk.mines[r] & bit) != 0 ) return -1;
+		tilesRevealed++;
+		return count;
+	}
+
+	/**
+	 * Reveal all 8 tiles around the tile at (row, col), and keep going through any empty tiles that are uncovered.
+	 * Works the same way as Minesweeper.revealNeighbours, but the stack holds packed (row, col) pairs so it can cross chunk boundaries.
+	 */
+	private void revealNeighbours(int row, int col){
+		int top = 0;
+		revealStack[top++] = pack(row, col);
+		while( top > 0 ){
+			long packed = revealStack[--top];
+			int i = (int)(packed >> 32);
+			int j = (int)packed;
+			for( int k=-1; k<2; k++){
+				for( int l=-1; l<2; l++){
+					if( getTile(i+k, j+l) == Tile.UNKNOWN ){
+						if( revealTile(i+k, j+l) == 0 ){		// if tile is empty, continue revealing its neighbours
+							if( top == revealStack.length ) revealStack = java.util.Arrays.copyOf(revealStack, top*2);
+							revealStack[top++] = pack(i+k, j+l);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Number of mines in the 3x3 neighbourhood of (row, col).
+	 * Tiles away from the edge of their chunk are counted with a few bit operations on the chunk's rows.
+	 */
+	private int countMines(int row, int col){
+		int r = row & CHUNK_MASK;
+		int c = col & CHUNK_MASK;
+		if( r > 0 && r < CHUNK_MASK && c > 0 && c < CHUNK_MASK ){
+			long[] mines = getChunk(row >> CHUNK_BITS, col >> CHUNK_BITS).mines;
+			long window = 7L << (c-1);
+			return Long.bitCount(mines[r-1] & window) + Long.bitCount(mines[r] & window) + Long.bitCount(mines[r+1] & window);
+		}
+		int count = 0;
+		for( int k=-1; k<2; k++){
+			for( int l=-1; l<2; l++){
+				if( isMine(row+k, col+l) ) count++;
+			}
+		}
+		return count;
+	}
+
+	private boolean isMine(int row, int col){
+		return (getChunk(row >> CHUNK_BITS, col >> CHUNK_BITS).mines[row & CHUNK_MASK] & (1L << col)) != 0;
+	}
+
+	/**
+	 * Get the loaded chunk at chunk coordinates (cx, cy), loading it from the evicted chunks or generating it if needed.
+	 */
+	private Chunk getChunk(int cy, int cx){
+		long key = key(cy, cx);
+		Chunk chunk = chunks.get(key);
+		if( chunk != null ) return chunk;
+
+		chunk = evicted.remove(key);
+		if( chunk == null ){
+			chunk = new Chunk();
+			chunk.revealed = new long[CHUNK_SIZE];
+		}
+		chunk.mines = generateMines(cy, cx);
+		if( chunk.revealed == RESOLVED ){
+			chunk.revealed = new long[CHUNK_SIZE];
+			for( int r=0; r<CHUNK_SIZE; r++) chunk.revealed[r] = ~chunk.mines[r];
+		}
+		chunks.put(key, chunk);
+		return chunk;
+	}
+
+	/**
+	 * Called by the chunk cache when it removes its least recently used chunk.
+	 */
+	private void evict(long key, Chunk chunk){
+		if( chunk.isEmpty() ) return;		// nothing explored, so it can be generated again from scratch
+		if( chunk.isResolved() ) chunk.revealed = RESOLVED;
+		chunk.mines = null;
+		evicted.put(key, chunk);
+	}
+
+	/**
+	 * Generate the mines of chunk (cy, cx) from the world seed, using Floyd's sampling like Board.placeMines.
+	 * The first move's tile is never a mine.
+	 */
+	private long[] generateMines(int cy, int cx){
+		long[] mines = new long[CHUNK_SIZE];
+		SplittableRandom random = new SplittableRandom(worldSeed ^ (cy * 0x9E3779B97F4A7C15L) ^ (cx * 0xC2B2AE3D27D4EB4FL));
+		int cells = CHUNK_SIZE*CHUNK_SIZE;
+		int start = cells;		// flat index within the chunk of the first move, or past the end if it is not in this chunk
+		if( !firstMove && (firstRow >> CHUNK_BITS) == cy && (firstCol >> CHUNK_BITS) == cx ){
+			start = ((firstRow & CHUNK_MASK) << CHUNK_BITS) | (firstCol & CHUNK_MASK);
+			cells--;
+		}
+		for( int j=cells-minesPerChunk; j<cells; j++){
+			int index = random.nextInt(j+1);
+			if( index >= start ) index++;
+			if( (mines[index >> CHUNK_BITS] & (1L << index)) != 0 ) index = (j >= start) ? j+1 : j;
+			mines[index >> CHUNK_BITS] |= 1L << index;
+		}
+		return mines;
+	}
+
+	private static int numFlagsIn(Chunk chunk){
+		int count = 0;
+		for( long row : chunk.flagged ) count += Long.bitCount(row);
+		return count;
+	}
+
+	private static long key(int cy, int cx){
+		return ((long)cy << 32) | (cx & 0xFFFFFFFFL);
+	}
+
+	private static long pack(int row, int col){
+		return ((long)row << 32) | (col & 0xFFFFFFFFL);
+	}
+}
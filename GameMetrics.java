@@ -0,0 +1,304 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measures what Minesweeper games do: how long moves, flags and mine placement take, how many tiles each move reveals,
+ * how deep each flood fill's stack gets, and how many games are started, won and lost.
+ * Set one on any number of games with Minesweeper.setMetrics; games without one only pay for a null check.
+ * Recording is lock-free, so the games can be on different threads, as in GameServer.
+ * The numbers can be read through the getters, over JMX once registered, or as text from dump, which can also be
+ * printed periodically.
+ * @author Rachel Wiens
+ */
+public class GameMetrics implements GameMetricsMBean {
+
+	/**
+	 * Counts of non-negative values in log-linear buckets, as HdrHistogram does: 16 buckets for each power of two, so a
+	 * value is reported to within 1/16 of itself, in a fixed 8 KB whatever the range. Recording is one atomic increment.
+	 */
+	public static class Histogram {
+		private static final int SUB_BITS = 4;
+		private static final int SUB_BUCKETS = 1 << SUB_BITS;
+		private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1)*SUB_BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+
+		public void record(long value){
+			if( value < 0 ) value = 0;
+			counts.incrementAndGet(bucket(value));
+			count.increment();
+			sum.add(value);
+		}
+
+		private static int bucket(long value){
+			if( value < SUB_BUCKETS ) return (int)value;
+			int magnitude = 63 - Long.numberOfLeadingZeros(value);		// at least SUB_BITS
+			int sub = (int)(value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+			return (magnitude - SUB_BITS + 1)*SUB_BUCKETS + sub;
+		}
+
+		/**
+		 * The largest value that falls in bucket.
+		 */
+		private static long highestValue(int bucket){
+			if( bucket < SUB_BUCKETS ) return bucket;
+			int shift = bucket/SUB_BUCKETS - 1;
+			long lowest = (long)(SUB_BUCKETS + bucket%SUB_BUCKETS) << shift;
+			return lowest + (1L << shift) - 1;
+		}
+
+		public long getCount(){
+			return count.sum();
+		}
+
+		public double getMean(){
+			long n = count.sum();
+			return n == 0 ? 0 : (double)sum.sum()/n;
+		}
+
+		/**
+		 * Value at percentile p (0 to 100), or 0 if nothing has been recorded.
+		 */
+		public long getPercentile(double p){
+			long total = 0;
+			for( int b=0; b<counts.length(); b++) total += counts.get(b);
+			if( total == 0 ) return 0;
+			long rank = Math.max(1, (long)Math.ceil(p/100*total));
+			long seen = 0;
+			for( int b=0; b<counts.length(); b++){
+				seen += counts.get(b);
+				if( seen >= rank ) return highestValue(b);
+			}
+			return getMax();
+		}
+
+		public long getMax(){
+			for( int b=counts.length()-1; b>=0; b--){
+				if( counts.get(b) != 0 ) return highestValue(b);
+			}
+			return 0;
+		}
+
+		public void reset(){
+			for( int b=0; b<counts.length(); b++) counts.set(b, 0);
+			count.reset();
+			sum.reset();
+		}
+
+		@Override
+		public String toString(){
+			return String.format("n=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d", getCount(), getMean(), getPercentile(50),
+					getPercentile(90), getPercentile(99), getPercentile(99.9), getMax());
+		}
+	}
+
+	private final Histogram moveLatency = new Histogram();
+	private final Histogram flagLatency = new Histogram();
+	private final Histogram shuffleLatency = new Histogram();
+	private final Histogram cellsRevealed = new Histogram();
+	private final Histogram fillDepth = new Histogram();
+	private final LongAdder gamesStarted = new LongAdder();
+	private final LongAdder gamesWon = new LongAdder();
+	private final LongAdder gamesLost = new LongAdder();
+	private ObjectName objectName;
+	private ScheduledExecutorService dumper;
+
+	/**
+	 * Record a move that revealed tiles.
+	 * @param nanos time the move took
+	 * @param revealed number of tiles revealed
+	 * @param depth deepest the flood fill stack got, or 0 if there was no flood fill
+	 */
+	void recordMove(long nanos, int revealed, int depth){
+		moveLatency.record(nanos);
+		cellsRevealed.record(revealed);
+		if( depth > 0 ) fillDepth.record(depth);
+	}
+
+	/**
+	 * Record the result of a game, once, when a move ends it.
+	 */
+	void recordGameOver(boolean won){
+		if( won ){
+			gamesWon.increment();
+		} else {
+			gamesLost.increment();
+		}
+	}
+
+	void recordFlag(long nanos){
+		flagLatency.record(nanos);
+	}
+
+	/**
+	 * Record the placing of the mines for a game's first move, which starts the game.
+	 */
+	void recordShuffle(long nanos){
+		shuffleLatency.record(nanos);
+		gamesStarted.increment();
+	}
+
+	public Histogram getMoveLatency(){
+		return moveLatency;
+	}
+
+	public Histogram getFlagLatency(){
+		return flagLatency;
+	}
+
+	public Histogram getShuffleLatency(){
+		return shuffleLatency;
+	}
+
+	public Histogram getCellsRevealed(){
+		return cellsRevealed;
+	}
+
+	public Histogram getFillDepth(){
+		return fillDepth;
+	}
+
+	public long getGamesStarted(){
+		return gamesStarted.sum();
+	}
+
+	public long getGamesWon(){
+		return gamesWon.sum();
+	}
+
+	public long getGamesLost(){
+		return gamesLost.sum();
+	}
+
+	public long getMoves(){
+		return moveLatency.getCount();
+	}
+
+	public long getFlags(){
+		return flagLatency.getCount();
+	}
+
+	public long getMoveLatencyP50(){
+		return moveLatency.getPercentile(50);
+	}
+
+	public long getMoveLatencyP99(){
+		return moveLatency.getPercentile(99);
+	}
+
+	public long getMoveLatencyP999(){
+		return moveLatency.getPercentile(99.9);
+	}
+
+	public long getMoveLatencyMax(){
+		return moveLatency.getMax();
+	}
+
+	public long getFlagLatencyP99(){
+		return flagLatency.getPercentile(99);
+	}
+
+	public long getShuffleLatencyP50(){
+		return shuffleLatency.getPercentile(50);
+	}
+
+	public long getShuffleLatencyMax(){
+		return shuffleLatency.getMax();
+	}
+
+	public double getCellsRevealedMean(){
+		return cellsRevealed.getMean();
+	}
+
+	public long getCellsRevealedP99(){
+		return cellsRevealed.getPercentile(99);
+	}
+
+	public long getCellsRevealedMax(){
+		return cellsRevealed.getMax();
+	}
+
+	public long getFillDepthP99(){
+		return fillDepth.getPercentile(99);
+	}
+
+	public long getFillDepthMax(){
+		return fillDepth.getMax();
+	}
+
+	/**
+	 * Everything measured, as text. Latencies are in nanoseconds.
+	 */
+	public String dump(){
+		String separator = System.lineSeparator();
+		return "games: started=" + getGamesStarted() + " won=" + getGamesWon() + " lost=" + getGamesLost() + separator
+				+ "move ns:     " + moveLatency + separator
+				+ "flag ns:     " + flagLatency + separator
+				+ "shuffle ns:  " + shuffleLatency + separator
+				+ "revealed:    " + cellsRevealed + separator
+				+ "fill depth:  " + fillDepth + separator;
+	}
+
+	public void reset(){
+		moveLatency.reset();
+		flagLatency.reset();
+		shuffleLatency.reset();
+		cellsRevealed.reset();
+		fillDepth.reset();
+		gamesStarted.reset();
+		gamesWon.reset();
+		gamesLost.reset();
+	}
+
+	/**
+	 * Show these metrics over JMX, as minesweeper:type=GameMetrics,name=name on the platform MBean server.
+	 * @param name
+	 * @throws JMException if the name is taken or not valid
+	 */
+	public synchronized void register(String name) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = ObjectName.getInstance("minesweeper:type=GameMetrics,name=" + ObjectName.quote(name));
+		server.registerMBean(this, objectName);
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Print dump() to out every period, on a daemon thread, until close.
+	 * @param out
+	 * @param period
+	 * @param unit
+	 */
+	public synchronized void startDump(PrintStream out, long period, TimeUnit unit){
+		if( dumper != null ) dumper.shutdownNow();
+		dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "game-metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumper.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+	}
+
+	/**
+	 * Stop the periodic dump and remove these metrics from JMX.
+	 */
+	public synchronized void close(){
+		if( dumper != null ) dumper.shutdownNow();
+		dumper = null;
+		if( objectName != null ){
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException e) {
+				// already gone
+			}
+			objectName = null;
+		}
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * What GameMetrics shows over JMX. Latencies are in nanoseconds.
+ * @author Rachel Wiens
+ */
+public interface GameMetricsMBean {
+	long getGamesStarted();
+	long getGamesWon();
+	long getGamesLost();
+	long getMoves();
+	long getFlags();
+	long getMoveLatencyP50();
+	long getMoveLatencyP99();
+	long getMoveLatencyP999();
+	long getMoveLatencyMax();
+	long getFlagLatencyP99();
+	long getShuffleLatencyP50();
+	long getShuffleLatencyMax();
+	double getCellsRevealedMean();
+	long getCellsRevealedP99();
+	long getCellsRevealedMax();
+	long getFillDepthP99();
+	long getFillDepthMax();
+	String dump();
+	void reset();
+}
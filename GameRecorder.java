@@ -0,0 +1,141 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Records games as a compact byte stream, so they can be audited and reproduced with GameReplay.
+ * Attach it with Minesweeper.setRecorder and every move and flag that changes the board is written. Each game is:
+ *   'G', or 'P' if the game was dealt a pooled board, varint length, varint height, varint mines, 8 byte little-endian seed,
+ *   then one varint per action, (flat tile index << 2) | action, where action is MOVE or FLAG, as a long since the
+ *   shifted index of a board of more than 2^29 tiles does not fit in an int,
+ *   then a 0 byte to end the game.
+ * Games follow one another, so recordings can be appended to and simply concatenated. A reader that reaches the end
+ * of the stream anywhere in a game treats the game as finished (or as not started, if its header is incomplete), so a
+ * file can be read while it is being written.
+ * The game header is written at the first move, once the seed (which a BoardPool or NoGuessGenerator may choose then)
+ * is known. Flags placed before the first move are held until then. Games that end before a first move are not recorded.
+ * Write errors are thrown as UncheckedIOException, since they happen inside Minesweeper's moves.
+ * @author Rachel Wiens
+ */
+public class GameRecorder implements Closeable, Flushable {
+	static final int GAME_START = 'G';
+	static final int POOLED_GAME_START = 'P';
+	static final int END = 0;
+	static final int MOVE = 1;
+	static final int FLAG = 2;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[8192];
+	private int size;
+	private boolean started;		// the current game's header has been written
+	private long[] pending = new long[16];		// actions made before the first move
+	private int pendingCount;
+	private long games;
+
+	public GameRecorder(OutputStream out){
+		this.out = out;
+	}
+
+	/**
+	 * Record a move on the tile at index of game, after it has been made.
+	 */
+	public void recordMove(Minesweeper game, int index){
+		if( !started ){
+			writeHeader(game);
+			for( int k=0; k<pendingCount; k++) writeVarint(pending[k]);
+			pendingCount = 0;
+			started = true;
+		}
+		writeVarint((long)index << 2 | MOVE);
+	}
+
+	/**
+	 * Record flagging or unflagging the tile at index of game.
+	 */
+	public void recordFlag(Minesweeper game, int index){
+		if( started ){
+			writeVarint((long)index << 2 | FLAG);
+			return;
+		}
+		if( pendingCount == pending.length ) pending = Arrays.copyOf(pending, pendingCount*2);
+		pending[pendingCount++] = (long)index << 2 | FLAG;
+	}
+
+	/**
+	 * End the current game and flush it, so a reader sees the whole game.
+	 */
+	public void endGame(){
+		pendingCount = 0;
+		if( !started ) return;
+		writeByte(END);
+		started = false;
+		games++;
+		flush();
+	}
+
+	/**
+	 * Number of games ended so far.
+	 */
+	public long getGames(){
+		return games;
+	}
+
+	public void flush(){
+		try {
+			out.write(buffer, 0, size);
+			size = 0;
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * End the current game and close the stream.
+	 */
+	public void close() throws IOException {
+		endGame();
+		flush();
+		out.close();
+	}
+
+	private void writeHeader(Minesweeper game){
+		writeByte(game.isPooledLayout() ? POOLED_GAME_START : GAME_START);
+		writeVarint(game.getBoardLength());
+		writeVarint(game.getBoardHeight());
+		writeVarint(game.getNumMines());
+		long seed = game.getSeed();
+		for( int b=0; b<8; b++){
+			writeByte((int)(seed >>> (8*b)));
+		}
+	}
+
+	/**
+	 * Write value, treated as unsigned, 7 bits at a time with the high bit set on every byte but the last.
+	 */
+	private void writeVarint(long value){
+		if( size + 10 > buffer.length ) drain();
+		while( (value & ~0x7F) != 0 ){
+			buffer[size++] = (byte)(value | 0x80);
+			value >>>= 7;
+		}
+		buffer[size++] = (byte)value;
+	}
+
+	private void writeByte(int value){
+		if( size == buffer.length ) drain();
+		buffer[size++] = (byte)value;
+	}
+
+	private void drain(){
+		try {
+			out.write(buffer, 0, size);
+			size = 0;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Replays games written by GameRecorder through a headless Minesweeper, reading the stream a buffer at a time.
+ * One Minesweeper is reused, through newGame(seed), for every game of the same size, and nothing is allocated per
+ * move, so replay runs as fast as the moves themselves.
+ * @author Rachel Wiens
+ */
+public class GameReplay implements Closeable {
+
+	/**
+	 * Told about each game and move as it is replayed. Every method does nothing by default.
+	 */
+	public interface Listener {
+		default void gameStarted(Minesweeper game){
+		}
+
+		/**
+		 * Called after each action. The tiles it changed are in game.getLastMove().
+		 * @param flag true for a flag, false for a move
+		 */
+		default void step(Minesweeper game, boolean flag, int row, int col){
+		}
+
+		default void gameEnded(Minesweeper game){
+		}
+	}
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[65536];
+	private int position;
+	private int limit;
+	private Minesweeper game;
+	private long games;
+	private long moves;
+
+	public GameReplay(InputStream in){
+		this.in = in;
+	}
+
+	/**
+	 * Replay the next game.
+	 * @param listener told about the game, or null
+	 * @return false if there were no more complete game headers
+	 * @throws IOException if the stream cannot be read, is not a recording or is damaged
+	 */
+	public boolean nextGame(Listener listener) throws IOException {
+		int start = readByte();
+		if( start < 0 ) return false;
+		if( start != GameRecorder.GAME_START && start != GameRecorder.POOLED_GAME_START ) throw new IOException("Not a game recording: unexpected byte " + start);
+		long length = readVarint();
+		long height = readVarint();
+		long mines = readVarint();
+		if( length < 0 || height < 0 || mines < 0 ) return false;		// the header has not been written completely yet
+		long cells = length*height;
+		if( length == 0 || height == 0 || length > Integer.MAX_VALUE || height > Integer.MAX_VALUE || cells > Integer.MAX_VALUE || mines >= cells ){		// cells is only used once the sides fit in ints
+			throw new IOException("Recording is damaged: game of " + length + "x" + height + " with " + mines + " mines");
+		}
+		long seed = 0;
+		for( int b=0; b<8; b++){
+			int value = readByte();
+			if( value < 0 ) return false;
+			seed |= (long)value << (8*b);
+		}
+		if( game == null || game.getBoardLength() != length || game.getBoardHeight() != height || game.getNumMines() != mines ){
+			game = new Minesweeper((int)length, (int)height, (int)mines, seed);
+		}
+		game.newGame(seed, start == GameRecorder.POOLED_GAME_START);
+		if( listener != null ) listener.gameStarted(game);
+
+		long value;
+		while( (value = readVarint()) > 0 ){		// 0 ends the game, and -1 is the end of the stream
+			long index = value >>> 2;
+			int action = (int)value & 3;
+			if( index >= cells || (action != GameRecorder.MOVE && action != GameRecorder.FLAG) ){
+				throw new IOException("Recording is damaged: action " + action + " on tile " + index + " of " + cells);
+			}
+			int row = (int)(index / length);
+			int col = (int)(index - row*length);
+			boolean flag = action == GameRecorder.FLAG;
+			if( flag ){
+				game.flag(row, col);
+			} else {
+				game.makeMove(row, col);
+			}
+			moves++;
+			if( listener != null ) listener.step(game, flag, row, col);
+		}
+		games++;
+		if( listener != null ) listener.gameEnded(game);
+		return true;
+	}
+
+	/**
+	 * Replay every remaining game.
+	 * @param listener told about each game, or null
+	 * @return number of games replayed
+	 * @throws IOException
+	 */
+	public long replayAll(Listener listener) throws IOException {
+		long replayed = 0;
+		while( nextGame(listener) ) replayed++;
+		return replayed;
+	}
+
+	/**
+	 * The game being (or last) replayed.
+	 */
+	public Minesweeper getGame(){
+		return game;
+	}
+
+	public long getGames(){
+		return games;
+	}
+
+	/**
+	 * Number of moves and flags replayed.
+	 */
+	public long getMoves(){
+		return moves;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Read an unsigned varint of up to 63 bits, or return -1 at the end of the stream, even part way through the varint.
+	 */
+	private long readVarint() throws IOException {
+		if( limit - position >= 9 ){		// fast path: the whole varint is in the buffer
+			long value = 0;
+			for( int shift=0; ; shift+=7){
+				byte b = buffer[position++];
+				value |= (long)(b & 0x7F) << shift;
+				if( b >= 0 ) return value;
+				if( shift == 56 ) throw new IOException("Varint is too long");
+			}
+		}
+		long value = 0;
+		for( int shift=0; ; shift+=7){
+			int b = readByte();
+			if( b < 0 ) return -1;		// a recording still being written can end part way through a number
+			value |= (long)(b & 0x7F) << shift;
+			if( b < 0x80 ) return value;
+			if( shift == 56 ) throw new IOException("Varint is too long");
+		}
+	}
+
+	private int readByte() throws IOException {
+		if( position == limit ){
+			limit = in.read(buffer, 0, buffer.length);
+			position = 0;
+			if( limit <= 0 ){
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	/**
+	 * Replay recordings and print the number of games, wins and moves per second.
+	 * Arguments: files...
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		for( String file : args ){
+			final long[] wins = new long[1];
+			Listener listener = new Listener(){
+				public void gameEnded(Minesweeper game){
+					if( game.isGameWon() ) wins[0]++;
+				}
+			};
+			long start = System.nanoTime();
+			try( GameReplay replay = new GameReplay(Files.newInputStream(Paths.get(file))) ){
+				replay.replayAll(listener);
+				double seconds = (System.nanoTime() - start)/1e9;
+				System.out.printf("%s: %d games, %d won, %d moves, %,.0f moves/s%n", file, replay.getGames(), wins[0], replay.getMoves(), replay.getMoves()/seconds);
+			}
+		}
+	}
+}
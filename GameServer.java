@@ -0,0 +1,167 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+
+/**
+ * Serves the CommandLineView protocol over TCP on the loopback address: the server prints the board and "Move: ", and
+ * the client sends a move as an "x y" or "x,y" line. Each connection is a session with its own Minesweeper and
+ * CommandLineView, which plays game after game until the client disconnects.
+ * Sessions run on virtual threads when the JVM has them (Java 21 and later), so a session waiting for its player
+ * costs a few kilobytes and thousands of idle connections are cheap. Older JVMs get one small-stack platform thread
+ * per session instead. Each move's output is collected by the view and sent with a single write.
+ * @author Rachel Wiens
+ */
+public class GameServer {
+	private final int length;
+	private final int height;
+	private final int mines;
+	private final ServerSocket serverSocket;
+	private final ExecutorService sessions;
+	private final AtomicInteger activeSessions = new AtomicInteger();
+	private final AtomicLong totalSessions = new AtomicLong();
+	private final AtomicLong movesMade = new AtomicLong();
+	private final GameMetrics metrics = new GameMetrics();		// shared by every session's game
+	private final Thread acceptor;
+
+	/**
+	 * Start serving games of the given size on port of the loopback address.
+	 * @param port the port to listen on, or 0 for any free port
+	 * @param length
+	 * @param height
+	 * @param mines
+	 * @throws IOException if the port cannot be opened
+	 */
+	public GameServer(int port, int length, int height, int mines) throws IOException {
+		new Minesweeper(length, height, mines, 0L);		// check the size before accepting anyone
+		this.length = length;
+		this.height = height;
+		this.mines = mines;
+		serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+		sessions = newSessionExecutor();
+		acceptor = new Thread(this::accept, "game-server");
+		acceptor.start();
+	}
+
+	/**
+	 * An executor that starts a virtual thread per task if the JVM supports them, or else a daemon platform thread with a small stack.
+	 */
+	static ExecutorService newSessionExecutor(){
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(null, runnable, "game-session", 256*1024);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	public int getPort(){
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Number of clients connected now.
+	 */
+	public int getActiveSessions(){
+		return activeSessions.get();
+	}
+
+	public long getTotalSessions(){
+		return totalSessions.get();
+	}
+
+	/**
+	 * Number of moves made in finished games and disconnected sessions.
+	 */
+	public long getMovesMade(){
+		return movesMade.get();
+	}
+	
+	/**
+	 * Timings and counts for the games of every session.
+	 */
+	public GameMetrics getMetrics(){
+		return metrics;
+	}
+
+	/**
+	 * Stop accepting connections and close the sessions.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		serverSocket.close();
+		sessions.shutdownNow();
+		metrics.close();
+	}
+
+	private void accept(){
+		while( !serverSocket.isClosed() ){
+			try {
+				Socket socket = serverSocket.accept();
+				sessions.execute(() -> serve(socket));
+			} catch (IOException e) {
+				if( !serverSocket.isClosed() ) System.err.println("Could not accept a connection: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Play games with one client until it disconnects.
+	 */
+	private void serve(Socket socket){
+		activeSessions.incrementAndGet();
+		totalSessions.incrementAndGet();
+		try( Socket client = socket ){
+			client.setTcpNoDelay(true);		// the view already sends each move in one write
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new BufferedInputStream(client.getInputStream()), StandardCharsets.US_ASCII));
+			Minesweeper game = new Minesweeper(length, height, mines);
+			game.setMetrics(metrics);
+			CommandLineView view = new CommandLineView(game, reader, client.getOutputStream(), false);		// no saving: a client must not choose files for the server to write
+			view.println("Welcome to Minesweeper!");
+			boolean playing = true;
+			while( playing ){
+				long before = view.getMovesMade();
+				playing = view.playGame();
+				movesMade.addAndGet(view.getMovesMade() - before);
+				game.newGame();
+			}
+		} catch (IOException e) {
+			// the client has gone
+		} finally {
+			activeSessions.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Run a server until it is killed, showing its metrics over JMX and printing them every minute.
+	 * Arguments: [port] [length height mines]
+	 * @param args
+	 * @throws IOException
+	 * @throws JMException
+	 */
+	public static void main(String[] args) throws IOException, JMException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+		int length = args.length > 3 ? Integer.parseInt(args[1]) : 10;
+		int height = args.length > 3 ? Integer.parseInt(args[2]) : 10;
+		int mines = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+		GameServer server = new GameServer(port, length, height, mines);
+		server.getMetrics().register("port " + server.getPort());
+		server.getMetrics().startDump(System.out, 1, TimeUnit.MINUTES);
+		System.out.printf("Serving %dx%d games with %d mines on %s:%d%n", length, height, mines, InetAddress.getLoopbackAddress().getHostAddress(), server.getPort());
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * An immutable snapshot of a Minesweeper game, from Minesweeper.snapshot(), that the game can be put back to with
+ * Minesweeper.restore(), e.g. by a solver trying out moves.
+ * The tiles are held in chunks of 128 that are shared with the game's earlier and later snapshots wherever they are
+ * the same, so a snapshot costs a table of chunk references plus a copy of only the chunks changed since the last one.
+ * @author Rachel Wiens
+ */
+public final class GameState {
+	private final int boardLength;
+	private final int boardHeight;
+	private final int numMines;
+	final long[][] chunks;
+	final int numFlags;
+	final int safeTilesLeft;
+	final boolean firstMove;
+	final long seed;
+	final int firstMoveIndex;		// with seed, determines where the mines are, unless firstMove
+	final boolean pooledLayout;		// the mines were placed as on a pooled board
+	final long time;
+
+	GameState(int length, int height, int mines, long[][] chunks, int numFlags, int safeTilesLeft, boolean firstMove, long seed, int firstMoveIndex, boolean pooledLayout, long time){
+		boardLength = length;
+		boardHeight = height;
+		numMines = mines;
+		this.chunks = chunks;
+		this.numFlags = numFlags;
+		this.safeTilesLeft = safeTilesLeft;
+		this.firstMove = firstMove;
+		this.seed = seed;
+		this.firstMoveIndex = firstMoveIndex;
+		this.pooledLayout = pooledLayout;
+		this.time = time;
+	}
+
+	public Tile getTile(int i, int j){
+		return Board.getTile(chunks, i*boardLength + j);
+	}
+
+	public int getBoardLength(){
+		return boardLength;
+	}
+
+	public int getBoardHeight(){
+		return boardHeight;
+	}
+
+	public int getNumMines(){
+		return numMines;
+	}
+
+	/**
+	 * Estimated number of mines left unflagged, as Minesweeper.getMinesLeft() was when the snapshot was taken.
+	 */
+	public int getMinesLeft(){
+		return numMines - numFlags;
+	}
+
+	public boolean isGameWon(){
+		return safeTilesLeft == 0;
+	}
+
+	public long getSeed(){
+		return seed;
+	}
+
+	/**
+	 * Milliseconds played, as Minesweeper.getTime() was when the snapshot was taken.
+	 */
+	public long getTime(){
+		return time;
+	}
+}
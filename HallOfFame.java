@@ -1,48 +1,354 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
 /**
- * Stats for past games
+ * Stats for past games, kept separately for each difficulty (board length, height and number of mines).
+ * If a file is given, every game is appended to it as a fixed size record (difficulty, seed, time in ms, won flag,
+ * timestamp, CRC) through a memory-mapped FileChannel, and the mapping is forced to disk every syncEvery games and on
+ * close(). The file is grown ahead of the records, so it ends in zeros. Opening the file reads records up to the first
+ * one whose CRC does not match, which is where the last run stopped (or was cut off mid-write), and zeros everything
+ * after it; later games overwrite from there.
+ * For each difficulty the games played, games won and the topK fastest wins are kept in memory. They are rebuilt by
+ * one sequential pass over the mapped file, so opening a log of hundreds of thousands of games takes milliseconds.
  * @author Rachel Wiens
  *
  */
 public class HallOfFame {
+	private static final int MAGIC = 0x4D534846;		// "MSHF"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_SIZE = 40;		// length, height, mines, seed, time, won, timestamp, 3 bytes padding, CRC
+	private static final int CRC_OFFSET = RECORD_SIZE - 4;
+	private static final long MIN_MAPPING = HEADER_SIZE + 1024L*RECORD_SIZE;
+
+	/**
+	 * A winning game on a leaderboard.
+	 */
+	public static class Score {
+		private final long seed;
+		private final int timeMillis;
+		private final long timestamp;
+
+		Score(long seed, int timeMillis, long timestamp){
+			this.seed = seed;
+			this.timeMillis = timeMillis;
+			this.timestamp = timestamp;
+		}
+
+		/**
+		 * Seed of the game, so it can be replayed.
+		 */
+		public long getSeed(){
+			return seed;
+		}
+
+		public int getTimeMillis(){
+			return timeMillis;
+		}
+
+		/**
+		 * When the game was recorded, in milliseconds since the epoch.
+		 */
+		public long getTimestamp(){
+			return timestamp;
+		}
+	}
+
+	/**
+	 * Games played and won at one difficulty, and its fastest wins in parallel arrays sorted by time.
+	 */
+	private static class Difficulty {
+		private final int length;
+		private final int height;
+		private final int mines;
+		private int gamesPlayed;
+		private int gamesWon;
+		private int size;
+		private final int[] times;
+		private final long[] seeds;
+		private final long[] timestamps;
+
+		private Difficulty(int length, int height, int mines, int topK){
+			this.length = length;
+			this.height = height;
+			this.mines = mines;
+			times = new int[topK];
+			seeds = new long[topK];
+			timestamps = new long[topK];
+		}
+
+		private void add(boolean won, long seed, int time, long timestamp){
+			gamesPlayed++;
+			if( !won ) return;
+			gamesWon++;
+			if( times.length == 0 || (size == times.length && time >= times[size-1]) ) return;		// slower than the whole leaderboard
+			int k = (size == times.length) ? size-1 : size++;
+			for( ; k>0 && times[k-1] > time; k--){		// earlier wins keep their place on ties
+				times[k] = times[k-1];
+				seeds[k] = seeds[k-1];
+				timestamps[k] = timestamps[k-1];
+			}
+			times[k] = time;
+			seeds[k] = seed;
+			timestamps[k] = timestamp;
+		}
+	}
+
+	private final int topK;
+	private final Map<String, Difficulty> difficulties = new HashMap<String, Difficulty>();
+	private Difficulty last;		// most recently used difficulty, since games mostly repeat the same one
 	private int gamesPlayed;
 	private int gamesWon;
-	private int bestTime;
-	
+	private final FileChannel channel;
+	private MappedByteBuffer log;
+	private final int syncEvery;
+	private int unsynced;
+	private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final CRC32C crc = new CRC32C();
+
+	/**
+	 * Hall of Fame kept in memory only.
+	 */
 	HallOfFame(){
-		gamesPlayed=gamesWon=0;
-		bestTime = Integer.MAX_VALUE;
+		this(10);
+	}
+
+	/**
+	 * Hall of Fame kept in memory only, with the topK fastest wins of each difficulty.
+	 */
+	public HallOfFame(int topK){
+		this.topK = topK;
+		syncEvery = 0;
+		channel = null;
+	}
+
+	/**
+	 * Open (or create) the Hall of Fame log in file and rebuild the stats from it.
+	 * @param file
+	 * @param topK number of fastest wins kept for each difficulty
+	 * @param syncEvery force the log to disk after this many games
+	 * @throws IOException if the file cannot be opened or is not a Hall of Fame log
+	 */
+	public HallOfFame(Path file, int topK, int syncEvery) throws IOException {
+		this.topK = topK;
+		this.syncEvery = Math.max(1, syncEvery);
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			long fileSize = channel.size();
+			map(Math.max(fileSize, MIN_MAPPING));
+			if( fileSize < HEADER_SIZE ){
+				log.putInt(0, MAGIC).putInt(4, VERSION);
+				log.force();
+			} else if( log.getInt(0) != MAGIC || log.getInt(4) != VERSION ){
+				throw new IOException("Not a Hall of Fame log: " + file);
+			}
+			recover();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
 	}
-	
+
 	/**
-	 * Update the Hall of Fame records.
-	 * Increment the number of games. Increment gamesWon if the game was won (gameWon==true). Set bestTime to time if it is lower.
+	 * Update the Hall of Fame records, and append the game to the log if there is one.
+	 * @param game the finished game, which gives the difficulty and seed
 	 * @param gameWon
-	 * @param time
+	 * @param timeMillis time taken, in milliseconds
+	 * @throws IOException if the log cannot be grown
 	 */
-	public void addGame(boolean gameWon, int time){
-		gamesPlayed++;
-		gamesWon += gameWon ? 1 : 0;
-		if(bestTime>time) bestTime = time;
+	public void addGame(Minesweeper game, boolean gameWon, int timeMillis) throws IOException {
+		addGame(game.getBoardLength(), game.getBoardHeight(), game.getNumMines(), game.getSeed(), gameWon, timeMillis);
+	}
+
+	/**
+	 * Update the Hall of Fame records, and append the game to the log if there is one.
+	 * @throws IOException if the log cannot be grown
+	 */
+	public void addGame(int length, int height, int mines, long seed, boolean gameWon, int timeMillis) throws IOException {
+		long timestamp = System.currentTimeMillis();
+		if( log != null ){
+			if( log.remaining() < RECORD_SIZE ) grow();
+			record.clear();
+			record.putInt(length).putInt(height).putInt(mines).putLong(seed).putInt(timeMillis).put((byte)(gameWon ? 1 : 0)).putLong(timestamp);
+			record.position(CRC_OFFSET).flip();		// the padding is never written, so it stays 0
+			crc.reset();
+			crc.update(record);
+			record.limit(RECORD_SIZE);
+			record.putInt(CRC_OFFSET, (int)crc.getValue());
+			log.put(record.array());
+			if( ++unsynced >= syncEvery ) sync();
+		}
+		add(length, height, mines, seed, gameWon, timeMillis, timestamp);
+	}
+
+	/**
+	 * Force every game added so far to disk.
+	 */
+	public void sync(){
+		if( log == null || unsynced == 0 ) return;
+		log.force();
+		unsynced = 0;
 	}
-	
+
+	/**
+	 * Sync and close the log. Games added afterwards are only kept in memory.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if( log == null ) return;
+		sync();
+		log = null;
+		channel.close();
+	}
+
+	/**
+	 * Number of games played at every difficulty.
+	 */
 	public int getNumberOfGames(){
 		return gamesPlayed;
 	}
-	
+
+	/**
+	 * Number of games won at every difficulty.
+	 */
 	public int getNumberOfWins(){
 		return gamesWon;
 	}
-	
+
 	/**
-	 * Return the winning percentage, rounded to the nearest whole number.
+	 * Return the winning percentage over every difficulty, rounded down to a whole number.
 	 * @return int
 	 */
 	public int getWinningPercentage(){
-		double percentage = ((double)gamesWon)/gamesPlayed;
-		return (int)(percentage*100);
+		return gamesPlayed == 0 ? 0 : (int)(100L*gamesWon/gamesPlayed);
+	}
+
+	public int getNumberOfGames(int length, int height, int mines){
+		Difficulty difficulty = difficulties.get(key(length, height, mines));
+		return difficulty == null ? 0 : difficulty.gamesPlayed;
+	}
+
+	public int getNumberOfWins(int length, int height, int mines){
+		Difficulty difficulty = difficulties.get(key(length, height, mines));
+		return difficulty == null ? 0 : difficulty.gamesWon;
+	}
+
+	/**
+	 * Return the winning percentage at a difficulty, rounded down to a whole number.
+	 * @return int
+	 */
+	public int getWinningPercentage(int length, int height, int mines){
+		int games = getNumberOfGames(length, height, mines);
+		return games == 0 ? 0 : (int)(100L*getNumberOfWins(length, height, mines)/games);
+	}
+
+	/**
+	 * Fastest winning time at a difficulty in milliseconds, or Integer.MAX_VALUE if no game has been won.
+	 * @return int
+	 */
+	public int getBestTime(int length, int height, int mines){
+		Difficulty difficulty = difficulties.get(key(length, height, mines));
+		return (difficulty == null || difficulty.size == 0) ? Integer.MAX_VALUE : difficulty.times[0];
+	}
+
+	/**
+	 * Fastest wins at a difficulty, fastest first, at most topK of them.
+	 * @return List of Score
+	 */
+	public List<Score> getLeaderboard(int length, int height, int mines){
+		List<Score> scores = new ArrayList<Score>();
+		Difficulty difficulty = difficulties.get(key(length, height, mines));
+		for( int k=0; difficulty != null && k<difficulty.size; k++){
+			scores.add(new Score(difficulty.seeds[k], difficulty.times[k], difficulty.timestamps[k]));
+		}
+		return scores;
+	}
+
+	private void add(int length, int height, int mines, long seed, boolean won, int time, long timestamp){
+		if( last == null || last.length != length || last.height != height || last.mines != mines ){
+			last = difficulties.computeIfAbsent(key(length, height, mines), key -> new Difficulty(length, height, mines, topK));
+		}
+		last.add(won, seed, time, timestamp);
+		gamesPlayed++;
+		if( won ) gamesWon++;
+	}
+
+	/**
+	 * Read every valid record after the header, leaving the log positioned after the last one.
+	 */
+	private void recover(){
+		ByteBuffer view = log.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int position = HEADER_SIZE;
+		while( position + RECORD_SIZE <= view.capacity() ){
+			view.limit(position + CRC_OFFSET).position(position);
+			crc.reset();
+			crc.update(view);
+			view.limit(view.capacity());
+			if( (int)crc.getValue() != view.getInt(position + CRC_OFFSET) ) break;		// unwritten or torn record: the end of the log
+			byte won = view.get(position + 24);
+			if( won != 0 && won != 1 ) break;
+			add(view.getInt(position), view.getInt(position + 4), view.getInt(position + 8), view.getLong(position + 12),
+					won == 1, view.getInt(position + 20), view.getLong(position + 25));
+			position += RECORD_SIZE;
+		}
+		log.position(position);
+		clearFrom(position);
+	}
+
+	/**
+	 * Zero the log from position on. A crash can write out the pages of later records but not a torn one before them,
+	 * and once new games overwrite the torn record those stale records would read as valid. Only words that are not
+	 * already zero are written, so a log that ends in zeros is just read, and the zeros are forced before any new game.
+	 */
+	private void clearFrom(int position){
+		boolean cleared = false;
+		for( ; position + 8 <= log.capacity(); position += 8){
+			if( log.getLong(position) != 0 ){
+				log.putLong(position, 0);
+				cleared = true;
+			}
+		}
+		for( ; position < log.capacity(); position++){
+			if( log.get(position) != 0 ){
+				log.put(position, (byte)0);
+				cleared = true;
+			}
+		}
+		if( cleared ) log.force();
+	}
+
+	/**
+	 * Map the first size bytes of the file, growing it if needed, keeping the current position.
+	 */
+	private void map(long size) throws IOException {
+		if( size > Integer.MAX_VALUE ) throw new IOException("Hall of Fame log is full");
+		int position = (log == null) ? 0 : log.position();
+		log = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		log.order(ByteOrder.LITTLE_ENDIAN);
+		log.position(position);
+	}
+
+	/**
+	 * Double the mapping once the log reaches its end. The old mapping is forced first, since it is no longer used.
+	 */
+	private void grow() throws IOException {
+		log.force();
+		unsynced = 0;
+		map(Math.min(2L*log.capacity(), HEADER_SIZE + (long)(Integer.MAX_VALUE - HEADER_SIZE)/RECORD_SIZE*RECORD_SIZE));
+		if( log.remaining() < RECORD_SIZE ) throw new IOException("Hall of Fame log is full");
 	}
-	
-	public int getBestTime(){
-		return bestTime;
+
+	private static String key(int length, int height, int mines){
+		return length + "x" + height + "/" + mines;
 	}
 }
@@ -0,0 +1,87 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * BoardStorage in arrays on the heap, which is where a Board keeps its tiles unless it is given other storage.
+ * @author Rachel Wiens
+ */
+class HeapStorage implements BoardStorage {
+	private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);		// atomic access to the packed tiles
+
+	private final long[] tiles;
+	private final long[] mines;
+	private final byte[] neighbourMines;
+
+	/**
+	 * Storage for a board of cells tiles, which must be at most Integer.MAX_VALUE.
+	 */
+	HeapStorage(long cells){
+		tiles = new long[(int)((cells+15) >>> 4)];
+		mines = new long[(int)((cells+63) >>> 6)];
+		neighbourMines = new byte[(int)cells];
+	}
+
+	public long getTiles(int word){
+		return tiles[word];
+	}
+
+	public void setTiles(int word, long tiles){
+		this.tiles[word] = tiles;
+	}
+
+	public long getTilesVolatile(int word){
+		return (long)WORDS.getVolatile(tiles, word);
+	}
+
+	public boolean compareAndSetTiles(int word, long expected, long tiles){
+		return WORDS.compareAndSet(this.tiles, word, expected, tiles);
+	}
+
+	public void clearTiles(){
+		Arrays.fill(tiles, 0L);
+	}
+
+	public long getMines(int word){
+		return mines[word];
+	}
+
+	public void setMines(int word, long mines){
+		this.mines[word] = mines;
+	}
+
+	public int getNeighbourMines(int index){
+		return neighbourMines[index];
+	}
+
+	public void addNeighbourMines(int index, int delta){
+		neighbourMines[index] += delta;
+	}
+
+	public void clearMines(){
+		Arrays.fill(mines, 0L);
+		Arrays.fill(neighbourMines, (byte)0);
+	}
+
+	/**
+	 * The counts are wrapped rather than copied; the longs are copied with one bulk put each.
+	 */
+	public ByteBuffer[] toBuffers(){
+		ByteBuffer tileBytes = ByteBuffer.allocateDirect(8*tiles.length).order(ByteOrder.LITTLE_ENDIAN);
+		tileBytes.asLongBuffer().put(tiles);
+		ByteBuffer mineBytes = ByteBuffer.allocateDirect(8*mines.length).order(ByteOrder.LITTLE_ENDIAN);
+		mineBytes.asLongBuffer().put(mines);
+		return new ByteBuffer[]{ tileBytes, mineBytes, ByteBuffer.wrap(neighbourMines) };
+	}
+
+	/**
+	 * Each array is read with one bulk get.
+	 */
+	public void load(ByteBuffer tileBytes, ByteBuffer mineBytes, ByteBuffer counts){
+		tileBytes.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(tiles);
+		mineBytes.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(mines);
+		counts.get(neighbourMines);
+	}
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * BoardStorage in a memory-mapped file, so the operating system pages the board in and out and the heap used is the
+ * same whatever the size of the board. After a header, which is left to whoever owns the storage, the file holds the
+ * tiles and the mines as little-endian longs and then the neighbour counts, as Minesweeper.save writes them. Each is
+ * mapped on its own, since one mapping cannot be larger than 2 GB.
+ * Tiles are changed atomically with a VarHandle on the mapping, as HeapStorage does on its array.
+ * @author Rachel Wiens
+ */
+class MappedStorage implements BoardStorage {
+	private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final MappedByteBuffer header;
+	private final MappedByteBuffer tiles;
+	private final MappedByteBuffer mines;
+	private final MappedByteBuffer counts;
+	private final boolean shared;		// changes go to the file, rather than staying in this mapping
+
+	/**
+	 * Map the header and board of a file laid out as above, which must be long enough to hold them. The channel can
+	 * be closed afterwards, since mappings stay valid until they are garbage collected.
+	 * @param channel
+	 * @param mode READ_WRITE to play on the file, or PRIVATE to play on a copy-on-write mapping that leaves it unchanged
+	 * @param headerSize
+	 * @param cells number of tiles, at most Integer.MAX_VALUE
+	 * @throws IOException if the file cannot be mapped
+	 */
+	MappedStorage(FileChannel channel, FileChannel.MapMode mode, int headerSize, long cells) throws IOException {
+		long tileBytes = 8*((cells+15) >>> 4);
+		long mineBytes = 8*((cells+63) >>> 6);
+		header = map(channel, mode, 0, headerSize);
+		tiles = map(channel, mode, headerSize, tileBytes);
+		mines = map(channel, mode, headerSize + tileBytes, mineBytes);
+		counts = map(channel, mode, headerSize + tileBytes + mineBytes, cells);
+		shared = mode == FileChannel.MapMode.READ_WRITE;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size) throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * The header at the start of the file, as a little-endian buffer.
+	 */
+	ByteBuffer getHeader(){
+		return header;
+	}
+
+	/**
+	 * Write changed pages to the file. Does nothing for a PRIVATE mapping, whose changes never reach the file.
+	 */
+	void force(){
+		if( !shared ) return;
+		header.force();
+		tiles.force();
+		mines.force();
+		counts.force();
+	}
+
+	public long getTiles(int word){
+		return tiles.getLong(word << 3);
+	}
+
+	public void setTiles(int word, long tiles){
+		this.tiles.putLong(word << 3, tiles);
+	}
+
+	public long getTilesVolatile(int word){
+		return (long)WORDS.getVolatile(tiles, word << 3);
+	}
+
+	public boolean compareAndSetTiles(int word, long expected, long tiles){
+		return WORDS.compareAndSet(this.tiles, word << 3, expected, tiles);
+	}
+
+	public void clearTiles(){
+		for( int position=0; position<tiles.capacity(); position+=8) tiles.putLong(position, 0L);
+	}
+
+	public long getMines(int word){
+		return mines.getLong(word << 3);
+	}
+
+	public void setMines(int word, long mines){
+		this.mines.putLong(word << 3, mines);
+	}
+
+	public int getNeighbourMines(int index){
+		return counts.get(index);
+	}
+
+	public void addNeighbourMines(int index, int delta){
+		counts.put(index, (byte)(counts.get(index) + delta));
+	}
+
+	public void clearMines(){
+		for( int position=0; position<mines.capacity(); position+=8) mines.putLong(position, 0L);
+		for( int position=0; position<counts.capacity(); position++) counts.put(position, (byte)0);
+	}
+
+	/**
+	 * Views of the mapping, so nothing is copied.
+	 */
+	public ByteBuffer[] toBuffers(){
+		return new ByteBuffer[]{ tiles.duplicate(), mines.duplicate(), counts.duplicate() };
+	}
+
+	public void load(ByteBuffer tileBytes, ByteBuffer mineBytes, ByteBuffer countBytes){
+		tiles.duplicate().put(tileBytes);
+		mines.duplicate().put(mineBytes);
+		counts.duplicate().put(countBytes);
+	}
+}
@@ -1,38 +1,574 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Minesweeper game logic class.
  * @author Rachel Wiens
  */
 public class Minesweeper {
-	private int time;
+	private static final int SAVE_MAGIC = 0x4D535356;		// "MSSV"
+	private static final int SAVE_VERSION = 2;		// version 1 did not save the first move's index or whether the board was pooled
+	private static final int SAVE_HEADER = 64;
+	
+	private long time;		// milliseconds played, kept up to date by the view and saved with the game
 	private final int boardHeight;
 	private final int boardLength;
 	private final int numMines;
 	private Board board;
-	private boolean[][] minefield;
+	private final MappedStorage mapping;		// the board's mapped file, or null if the board is on the heap
+	private Path file;		// the file the game is played in, if it was opened with open()
 	private boolean firstMove;		// true if the first move in the game has yet to be made.
+	private boolean gameOver;		// a move has ended the current game, and metrics stop counting its moves
 	private int numFlags;
+	private int safeTilesLeft;		// number of non-mine tiles that are still UNKNOWN. The game is won when this reaches 0.
+	private int[] revealStack = new int[0];		// work stack of flat tile indices for revealNeighbours, reused between moves
+	private final SplittableRandom seeds;		// generates the seed of each new game
+	private long seed;		// seed for the current game's mine layout
+	private final MoveDelta lastMove;		// tiles changed by the last makeMove or flag
+	private NoGuessGenerator noGuess;		// if set, chooses the seed on the first move so the board needs no guessing
+	private BoardPool boardPool;		// if set, supplies boards with their mines already placed for the first move
+	private GameRecorder recorder;		// if set, every move and flag is recorded
+	private GameMetrics metrics;		// if set, moves and flags are timed and counted
+	private int fillDepth;		// deepest the reveal stack got in the last move
+	private int firstMoveIndex = -1;		// flat index of the first move, which with seed fixes where the mines are. -1 if not known.
+	private boolean pooledLayout;		// the mines were placed over every tile and the first move's mine moved, as on a pooled board
+	private long[][] snapshotChunks;		// tiles of the last snapshot taken or restored, which the next snapshot shares where unchanged
+	private long[] changedChunks;		// bitset of the tile chunks changed since snapshotChunks
+	private long[] undoLog;		// each step's changed tiles as index<<4 | new ordinal, then the counts before and after. null unless undo is on.
+	private int[] undoSteps;		// where each step starts in undoLog; one more entry marks the end of the last step
+	private int undoStepCount;		// steps recorded
+	private int undoPosition;		// steps done; the ones after it can be redone
 	
 	public Minesweeper(){
 		this(10, 10, 20);
 	}
 	
 	public Minesweeper(int length, int height, int mines){
+		this(length, height, mines, ThreadLocalRandom.current().nextLong());
+	}
+	
+	/**
+	 * Create a game whose mine layout is determined by seed and the first move.
+	 * Games started afterwards with newGame() get seeds drawn from seed as well, so the whole sequence of games can be reproduced.
+	 * @param length
+	 * @param height
+	 * @param mines
+	 * @param seed
+	 */
+	public Minesweeper(int length, int height, int mines, long seed){
+		this(length, height, mines, seed, null);
+	}
+	
+	/**
+	 * Create a game whose board is held in mapping, or on the heap if mapping is null.
+	 */
+	private Minesweeper(int length, int height, int mines, long seed, MappedStorage mapping){
+		checkSize(length, height, mines);
 		boardLength = length;
 		boardHeight = height;
 		numMines = mines;
 		numFlags = 0;
-		board = new Board(boardHeight, boardLength, numMines);
-		minefield = new boolean[boardHeight][boardLength];			// array of mines. Element is true if it is a mine, false otherwise
+		board = new Board(boardHeight, boardLength, numMines, mapping);		// visible tiles and mine locations
+		this.mapping = mapping;
+		lastMove = new MoveDelta(boardLength);
 		firstMove = true;
+		safeTilesLeft = boardHeight*boardLength - numMines;
+		seeds = new SplittableRandom(seed);
+		this.seed = seed;
+	}
+	
+	private static void checkSize(int length, int height, int mines){
+		if( length <= 0 || height <= 0 ) throw new IllegalArgumentException("Board must have at least one tile: " + length + "x" + height);
+		if( (long)length*height > Integer.MAX_VALUE ) throw new IllegalArgumentException("Board is too large: " + length + "x" + height);
+		if( mines < 0 || mines >= (long)length*height ) throw new IllegalArgumentException("Number of mines must be between 0 and " + ((long)length*height - 1) + ": " + mines);
 	}
 	
 	/**
 	 * Start a new game with the same board dimensions and number of mines as the previous game
 	 */
 	public void newGame(){
+		newGame(seeds.nextLong());
+	}
+	
+	/**
+	 * Start a new game with the same board dimensions and number of mines as the previous game, using the given seed for the mine layout.
+	 * @param seed
+	 */
+	public void newGame(long seed){
+		newGame(seed, false);
+	}
+	
+	/**
+	 * Start a new game with seed whose mines, if pooledLayout, are placed as a BoardPool's board is rather than around
+	 * the first move, so a game that was dealt a pooled board can be played again from its seed.
+	 * @param seed
+	 * @param pooledLayout
+	 */
+	void newGame(long seed, boolean pooledLayout){
+		if( recorder != null ) recorder.endGame();
 		board.clearBoard();
+		lastMove.clear();
+		snapshotChunks = null;
+		clearUndo();
 		numFlags = 0;
 		firstMove = true;
+		gameOver = false;
+		firstMoveIndex = -1;
+		this.pooledLayout = pooledLayout;
+		safeTilesLeft = boardHeight*boardLength - numMines;
+		this.seed = seed;
+		updateFile();
+	}
+	
+	/**
+	 * True until the current game's first move, which places the mines.
+	 * @return boolean
+	 */
+	public boolean isFirstMove(){
+		return firstMove;
+	}
+	
+	/**
+	 * Seed of the current game. new Minesweeper(length, height, mines, getSeed()) played with the same moves gives the same game,
+	 * unless the game was dealt a pooled board (see isPooledLayout).
+	 * @return long
+	 */
+	public long getSeed(){
+		return seed;
+	}
+	
+	/**
+	 * True if the current game's mines came from a BoardPool, which places them before the first move is known, so
+	 * replaying it from getSeed() needs newGame(seed, true).
+	 * @return boolean
+	 */
+	boolean isPooledLayout(){
+		return pooledLayout;
+	}
+	
+	/**
+	 * Only deal boards that can be solved from the first move without guessing, using generator to find them.
+	 * The first move then waits for the generator, which can take a while, so a view should not make it on its UI thread.
+	 * Pass null to deal any board.
+	 * The seed chosen for the game is the one returned by getSeed() after the first move.
+	 * @param generator
+	 */
+	public void setNoGuess(NoGuessGenerator generator){
+		noGuess = generator;
+	}
+	
+	public NoGuessGenerator getNoGuess(){
+		return noGuess;
+	}
+	
+	/**
+	 * Take the mine layout for each game's first move from pool, so no mines are placed while the player waits.
+	 * The game's seed is then the seed of the pooled board, not one drawn from this game's seeds. A pooled board's mines are
+	 * placed over every tile, with a mine on the first move then moved elsewhere, so the same seed gives another layout than
+	 * in a game without a pool; GameRecorder records which it was. The pool is not used in no-guess mode, since that layout
+	 * depends on the first move, nor by a game played in a file from open() or load(), whose board must stay there. Pass null to stop using it.
+	 * @param pool
+	 */
+	public void setBoardPool(BoardPool pool){
+		boardPool = pool;
+	}
+	
+	public BoardPool getBoardPool(){
+		return boardPool;
+	}
+	
+	/**
+	 * Record every move and flag that changes the board with recorder, from the current game on. A game is ended in the
+	 * recording by newGame(), or by closing the recorder. Pass null to stop recording.
+	 * Recordings have no undo, so undo and redo are refused while a recorder is set.
+	 * @param recorder
+	 */
+	public void setRecorder(GameRecorder recorder){
+		this.recorder = recorder;
+	}
+	
+	public GameRecorder getRecorder(){
+		return recorder;
+	}
+	
+	/**
+	 * Time and count every move, flag and mine placement in metrics, which other games may share. Pass null to stop.
+	 * Each game's result is counted once, by the move that ends it; moves and flags after that are not counted, until newGame.
+	 * @param metrics
+	 */
+	public void setMetrics(GameMetrics metrics){
+		this.metrics = metrics;
+	}
+	
+	public GameMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Keep every move and flag of the current game so they can be undone and redone. Each step keeps only the tiles it
+	 * changed, so the history of a whole game is a few times the size of the board. The history is cleared by newGame
+	 * and restore. Undo and redo are refused while a GameRecorder is set, since a recording could not play them back.
+	 * @param undoable
+	 */
+	public void setUndoable(boolean undoable){
+		if( !undoable ){
+			undoLog = null;
+			undoSteps = null;
+		} else if( undoSteps == null ){
+			undoLog = new long[64];
+			undoSteps = new int[16];
+		}
+		clearUndo();
+	}
+	
+	public boolean isUndoable(){
+		return undoSteps != null;
+	}
+	
+	public boolean canUndo(){
+		return recorder == null && undoPosition > 0;
+	}
+	
+	public boolean canRedo(){
+		return recorder == null && undoPosition < undoStepCount;
+	}
+	
+	/**
+	 * Take back the last move or flag not already undone. The tiles it changed back are in getLastMove() afterwards.
+	 * @return false if there was nothing to undo
+	 */
+	public boolean undo(){
+		lastMove.clear();
+		if( !canUndo() ) return false;
+		undoPosition--;
+		int end = undoSteps[undoPosition + 1] - 2;
+		for( int k=end-1; k>=undoSteps[undoPosition]; k--){
+			int index = (int)(undoLog[k] >>> 4);
+			int code = (int)(undoLog[k] & 15);
+			Tile tile = code == Tile.FLAGGED.ordinal() ? Tile.UNKNOWN : code == Tile.UNKNOWN.ordinal() ? Tile.FLAGGED : Tile.UNKNOWN;		// every change is a reveal, a flag or an unflag
+			board.setTile(index, tile);
+			lastMove.add(index, tile);
+		}
+		setCounts(undoLog[end]);
+		markChanged();
+		updateFile();
+		return true;
+	}
+	
+	/**
+	 * Make the last undone move or flag again. The tiles it changed are in getLastMove() afterwards.
+	 * @return false if there was nothing to redo
+	 */
+	public boolean redo(){
+		lastMove.clear();
+		if( !canRedo() ) return false;
+		int end = undoSteps[undoPosition + 1] - 2;
+		for( int k=undoSteps[undoPosition]; k<end; k++){
+			int index = (int)(undoLog[k] >>> 4);
+			Tile tile = Tile.values()[(int)(undoLog[k] & 15)];
+			board.setTile(index, tile);
+			lastMove.add(index, tile);
+		}
+		setCounts(undoLog[end + 1]);
+		undoPosition++;
+		markChanged();
+		updateFile();
+		return true;
+	}
+	
+	/**
+	 * Take an immutable snapshot of the game, which restore can return it to. The snapshot shares its unchanged tile
+	 * chunks with the previous one, so it costs a table of chunk references plus only the chunks changed since then.
+	 * @return GameState
+	 */
+	public GameState snapshot(){
+		if( changedChunks == null ) changedChunks = new long[((boardHeight*boardLength >>> Board.CHUNK_SHIFT) >>> 6) + 1];
+		snapshotChunks = board.snapshotTiles(snapshotChunks, changedChunks);
+		java.util.Arrays.fill(changedChunks, 0L);
+		return new GameState(boardLength, boardHeight, numMines, snapshotChunks, numFlags, safeTilesLeft, firstMove, seed, firstMoveIndex, pooledLayout, time);
+	}
+	
+	/**
+	 * Put the game back as it was when state was taken from it, copying only the tile chunks that differ.
+	 * The time played goes back too, and the undo history is cleared.
+	 * @param state a snapshot of this game, or of a game of the same size
+	 * @throws IllegalArgumentException if state is from a board of a different size, or its mines cannot be placed again
+	 */
+	public void restore(GameState state){
+		if( state.getBoardLength() != boardLength || state.getBoardHeight() != boardHeight || state.getNumMines() != numMines ){
+			throw new IllegalArgumentException("Snapshot is of a different board: " + state.getBoardLength() + "x" + state.getBoardHeight() + "/" + state.getNumMines());
+		}
+		if( !state.firstMove && (state.seed != seed || state.firstMoveIndex != firstMoveIndex || state.pooledLayout != pooledLayout) ){		// another mine layout
+			if( state.firstMoveIndex < 0 ) throw new IllegalArgumentException("Mines of snapshot cannot be placed again");
+			placeMines(state.seed, state.firstMoveIndex, state.pooledLayout);
+		}
+		if( changedChunks == null ) changedChunks = new long[((boardHeight*boardLength >>> Board.CHUNK_SHIFT) >>> 6) + 1];
+		board.restoreTiles(state.chunks, snapshotChunks, changedChunks);
+		snapshotChunks = state.chunks;
+		java.util.Arrays.fill(changedChunks, 0L);
+		numFlags = state.numFlags;
+		safeTilesLeft = state.safeTilesLeft;
+		firstMove = state.firstMove;
+		if( firstMove ) gameOver = false;		// back before the game started, so it can be counted again
+		seed = state.seed;
+		firstMoveIndex = state.firstMoveIndex;
+		pooledLayout = state.pooledLayout;
+		time = state.time;
+		lastMove.clear();
+		clearUndo();
+		updateFile();
+	}
+	
+	/**
+	 * Note the tiles in lastMove as changed, for the next snapshot, and add them to the undo history as a new step.
+	 * A game played in a file has its header brought up to date as well.
+	 * @param before the counts before the change, from packCounts
+	 */
+	private void changed(long before){
+		markChanged();
+		updateFile();
+		if( undoSteps == null ) return;
+		int size = undoSteps[undoPosition];		// anything after it was undone and can no longer be redone
+		if( size + lastMove.size() + 2 > undoLog.length ) undoLog = java.util.Arrays.copyOf(undoLog, Math.max(undoLog.length*2, size + lastMove.size() + 2));
+		for( int k=0; k<lastMove.size(); k++){
+			undoLog[size++] = (long)lastMove.getIndex(k) << 4 | lastMove.getTileCode(k);
+		}
+		undoLog[size++] = before;
+		undoLog[size++] = packCounts();
+		undoPosition++;
+		undoStepCount = undoPosition;
+		if( undoStepCount + 1 == undoSteps.length ) undoSteps = java.util.Arrays.copyOf(undoSteps, undoSteps.length*2);
+		undoSteps[undoStepCount] = size;
+	}
+	
+	private void markChanged(){
+		if( changedChunks == null ) return;
+		for( int k=0; k<lastMove.size(); k++){
+			int chunk = lastMove.getIndex(k) >>> Board.CHUNK_SHIFT;
+			changedChunks[chunk >>> 6] |= 1L << chunk;
+		}
+	}
+	
+	private void clearUndo(){
+		undoStepCount = 0;
+		undoPosition = 0;
+		if( undoSteps != null ) undoSteps[0] = 0;
+	}
+	
+	/**
+	 * The flag count, safe tiles left and whether the first move is still to come, in one long.
+	 */
+	private long packCounts(){
+		return (firstMove ? 1L << 63 : 0) | (long)numFlags << 32 | (safeTilesLeft & 0xFFFFFFFFL);
+	}
+	
+	private void setCounts(long counts){
+		firstMove = counts < 0;
+		numFlags = (int)(counts >>> 32) & Integer.MAX_VALUE;
+		safeTilesLeft = (int)counts;
+	}
+	
+	/**
+	 * Milliseconds played in this game, as last set by setTime. Saved and loaded with the game.
+	 * @return long
+	 */
+	public long getTime(){
+		return time;
+	}
+	
+	public void setTime(long millis){
+		time = millis;
+		updateFile();
+	}
+	
+	/**
+	 * Save the game in progress to file. The format is a 64 byte little-endian header (magic, version, length, height,
+	 * mines, flags, safe tiles left, first move, seed, time, first move's index, pooled layout) followed by the board's
+	 * packed tiles, mines and neighbour counts exactly as they are held in memory, all written with one gathering write.
+	 * A board on the heap has its longs copied once, into direct buffers; a board in a file is written straight from its mapping.
+	 * The game is written to a temporary file that then replaces file, so file is never left half written, and a game
+	 * loaded or opened from file keeps its own mapping of it. Saving a game opened with open() to its own file just forces it.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void save(Path file) throws IOException {
+		if( this.file != null && Files.exists(file) && Files.isSameFile(file, this.file) ){
+			force();
+			return;
+		}
+		ByteBuffer header = ByteBuffer.allocate(SAVE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		writeHeader(header);
+		ByteBuffer[] arrays = board.toBuffers();
+		ByteBuffer[] buffers = { header, arrays[0], arrays[1], arrays[2] };
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, ".minesweeper", ".tmp");
+		try {
+			try( FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE) ){
+				while( buffers[buffers.length-1].hasRemaining() ) channel.write(buffers);
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+	
+	/**
+	 * Write the counts and the current game's seed, time and first move into a header of the saved game format.
+	 */
+	private void writeHeader(ByteBuffer header){
+		header.putInt(0, SAVE_MAGIC).putInt(4, SAVE_VERSION).putInt(8, boardLength).putInt(12, boardHeight).putInt(16, numMines)
+				.putInt(20, numFlags).putInt(24, safeTilesLeft).putInt(28, firstMove ? 1 : 0).putLong(32, seed).putLong(40, time)
+				.putInt(48, firstMoveIndex).putInt(52, pooledLayout ? 1 : 0);		// the rest of the header is reserved, and 0
+	}
+	
+	/**
+	 * Set the counts and the current game's time and first move from a saved game's header.
+	 */
+	private void readHeader(ByteBuffer header){
+		int version = header.getInt(4);
+		numFlags = header.getInt(20);
+		safeTilesLeft = header.getInt(24);
+		firstMove = header.getInt(28) != 0;
+		time = header.getLong(40);
+		firstMoveIndex = version == 1 ? -1 : header.getInt(48);
+		pooledLayout = version != 1 && header.getInt(52) != 0;
+	}
+	
+	/**
+	 * Bring the header of the file the game is played in up to date, if it is played in one. The header is in the
+	 * mapping, so this is a few writes to memory and the file has the whole game even if the program stops.
+	 */
+	private void updateFile(){
+		if( mapping != null ) writeHeader(mapping.getHeader());
+	}
+	
+	/**
+	 * Read the header of a saved game and check it against the size of the file.
+	 * @return the header, little-endian
+	 * @throws IOException if the file is not a saved game, or is damaged
+	 */
+	private static ByteBuffer readSavedHeader(FileChannel channel, Path file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(SAVE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		while( header.hasRemaining() && channel.read(header, header.position()) >= 0 );
+		if( header.hasRemaining() || header.getInt(0) != SAVE_MAGIC ) throw new IOException("Not a saved game: " + file);
+		int version = header.getInt(4);
+		if( version != SAVE_VERSION && version != 1 ) throw new IOException("Unsupported saved game version: " + version);
+		int length = header.getInt(8);
+		int height = header.getInt(12);
+		long cells = (long)length*height;
+		if( length <= 0 || height <= 0 || cells > Integer.MAX_VALUE || channel.size() != SAVE_HEADER + Board.sizeInBytes(height, length) ){
+			throw new IOException("Saved game is damaged: " + file);
+		}
+		int mines = header.getInt(16);
+		int flags = header.getInt(20);
+		int safeTiles = header.getInt(24);
+		int firstMoveIndex = version == 1 ? -1 : header.getInt(48);
+		if( mines < 0 || mines >= cells || flags < 0 || flags > cells || safeTiles < 0 || safeTiles > cells - mines
+				|| firstMoveIndex < -1 || firstMoveIndex >= cells ){
+			throw new IOException("Saved game is damaged: " + file);
+		}
+		return header;
+	}
+	
+	/**
+	 * Load a game saved with save(). The file is memory-mapped copy-on-write and the game is played straight from the
+	 * mapping, so nothing is read until it is needed and loading costs about the same whatever the size of the board.
+	 * The file itself is never changed: the pages a move writes are copied, privately, and save() writes a new file.
+	 * Changes made to the file by others after loading may show through pages the game has not written, so use open() to
+	 * play on the file itself. A file that cannot be opened for writing, which the mapping needs, is read onto the heap.
+	 * The loaded game's later games (from newGame()) get seeds drawn from its saved seed.
+	 * @param file
+	 * @return Minesweeper
+	 * @throws IOException if the file cannot be read or is not a saved game
+	 */
+	public static Minesweeper load(Path file) throws IOException {
+		if( !Files.isWritable(file) ) return read(file);
+		try( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE) ){
+			return map(channel, file, FileChannel.MapMode.PRIVATE);
+		}		// the mapping outlives the channel
+	}
+	
+	/**
+	 * Load a saved game onto the heap, reading each of the board's arrays from a read-only mapping with one bulk copy.
+	 */
+	private static Minesweeper read(Path file) throws IOException {
+		try( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ){
+			ByteBuffer header = readSavedHeader(channel, file);
+			int length = header.getInt(8);
+			int height = header.getInt(12);
+			long cells = (long)length*height;
+			Minesweeper game = new Minesweeper(length, height, header.getInt(16), header.getLong(32));
+			long tileBytes = 8*((cells+15) >>> 4);		// the sizes of Board's arrays
+			long mineBytes = 8*((cells+63) >>> 6);
+			game.board.load(channel.map(FileChannel.MapMode.READ_ONLY, SAVE_HEADER, tileBytes),
+					channel.map(FileChannel.MapMode.READ_ONLY, SAVE_HEADER + tileBytes, mineBytes),
+					channel.map(FileChannel.MapMode.READ_ONLY, SAVE_HEADER + tileBytes + mineBytes, cells));
+			game.readHeader(header);
+			return game;
+		}
+	}
+	
+	/**
+	 * Play a game kept in file instead of on the heap, for boards too big for it. The board is memory-mapped, so the
+	 * operating system pages it in and out, and every move and flag is made straight on the file, which has the layout
+	 * save() writes. If file holds a game, saved or from an earlier open, that game is reopened and must have the given
+	 * size; otherwise a new game with seed is created in it. The file is never truncated.
+	 * The heap a move uses grows with the tiles it changes (see getLastMove), not with the board. The file is up to date
+	 * after every move, as far as the operating system is concerned; force() makes sure it is on disk.
+	 * @param file
+	 * @param length
+	 * @param height
+	 * @param mines
+	 * @param seed seed of the new game, if one is created
+	 * @return Minesweeper
+	 * @throws IOException if the file cannot be opened or mapped, or holds something other than a game of this size
+	 */
+	public static Minesweeper open(Path file, int length, int height, int mines, long seed) throws IOException {
+		checkSize(length, height, mines);
+		Minesweeper game;
+		try( FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE) ){
+			if( channel.size() == 0 ){
+				channel.write(ByteBuffer.allocate(1), SAVE_HEADER + Board.sizeInBytes(height, length) - 1);		// every tile UNKNOWN and no mines, sparsely
+				game = new Minesweeper(length, height, mines, seed, new MappedStorage(channel, FileChannel.MapMode.READ_WRITE, SAVE_HEADER, (long)length*height));
+				game.updateFile();
+			} else {
+				game = map(channel, file, FileChannel.MapMode.READ_WRITE);
+				if( game.boardLength != length || game.boardHeight != height || game.numMines != mines ){
+					throw new IOException("Game in " + file + " is " + game.boardLength + "x" + game.boardHeight + " with " + game.numMines + " mines");
+				}
+			}
+		}		// the mapping outlives the channel
+		game.file = file;
+		return game;
+	}
+	
+	/**
+	 * Make a game on a mapping of the saved game in channel.
+	 */
+	private static Minesweeper map(FileChannel channel, Path file, FileChannel.MapMode mode) throws IOException {
+		ByteBuffer header = readSavedHeader(channel, file);
+		int length = header.getInt(8);
+		int height = header.getInt(12);
+		MappedStorage mapping = new MappedStorage(channel, mode, SAVE_HEADER, (long)length*height);
+		Minesweeper game = new Minesweeper(length, height, header.getInt(16), header.getLong(32), mapping);
+		game.readHeader(header);
+		return game;
+	}
+	
+	/**
+	 * Make sure every change to a game played in a file, from open(), is on disk, so it survives the machine stopping.
+	 * Does nothing for a game on the heap.
+	 */
+	public void force(){
+		if( mapping != null ) mapping.force();
 	}
 	
 	/**
@@ -59,10 +595,18 @@ public class Minesweeper {
 		return new Minesweeper(100,100, 300);
 	}
 	
+	/**
+	 * Return a copy of the visible board. This is O(height*length); use getTile to look up a single tile.
+	 * @return Tile[][]
+	 */
 	public Tile[][] getBoard(){
 		return board.getBoard();
 	}
 	
+	public Tile getTile(int i, int j){
+		return board.getTile(i, j);
+	}
+	
 	public int getBoardLength(){
 		return boardLength;
 	}
@@ -71,30 +615,63 @@ public class Minesweeper {
 		return boardHeight;
 	}
 	
+	public int getNumMines(){
+		return numMines;
+	}
+	
+	/**
+	 * Return the tiles changed by the last call to makeMove or flag, so a view only needs to update those.
+	 * The same object is reused for every move and is empty after newGame.
+	 * @return MoveDelta
+	 */
+	public MoveDelta getLastMove(){
+		return lastMove;
+	}
+	
 	/** 
 	 * assign mines randomly to the minefield. A total of numMines is required.
 	 * shuffleMines will be called after the first move in a new game.
-	 * startX and startY are the indices of the first move, which cannot be a mine since that would not be fun.
+	 * startX and startY are the row and column of the first move, which cannot be a mine since that would not be fun.
+	 * The mines are placed over every tile but the start position by Board.placeMines. A pooled board already has its mines
+	 * placed over every tile, so a mine on the start position is moved to a random free tile instead.
 	 * @param startX
 	 * @param startY
 	 */
 	private void shuffleMines( int startX, int startY ){
-		// clear previous mine board
-		for( int i=0; i<boardHeight; i++){
-			for(int j=0; j<boardLength; j++){
-				minefield[i][j] = false;				
-			}
-		}		
-		// add mines at random locations
-		int minesAdded = 0;
-		while( minesAdded < numMines ){
-			int i = (int)(Math.random()*boardLength);
-			int j = (int)(Math.random()*boardHeight);
-			if( !minefield[i][j] && !( (i==startX) && (j==startY) ) ){	// mine has not already been added and is not the start position
-				minefield[i][j] = true;
-				minesAdded++;
+		Board ready = (boardPool != null && noGuess == null && mapping == null) ? boardPool.take(boardLength, boardHeight, numMines) : null;
+		firstMoveIndex = board.index(startX, startY);
+		if( ready != null ){
+			ready.copyTiles(board);		// keep any flags placed before the first move
+			boardPool.recycle(board);
+			board = ready;
+			seed = board.getSeed();
+			pooledLayout = true;
+			board.moveMine(firstMoveIndex);
+		} else {
+			if( noGuess != null ) seed = noGuess.findSeed(boardLength, boardHeight, numMines, startX, startY, seed);
+			placeMines(seed, firstMoveIndex, pooledLayout);
+		}
+		
+		// a flagged tile is not UNKNOWN, so flagged non-mine tiles do not need to be revealed to win
+		int flaggedSafe = 0;
+		if( numFlags > 0 ){
+			for( int index=0; index<boardHeight*boardLength; index++){
+				if( board.getTile(index) == Tile.FLAGGED && !board.isMine(index) ) flaggedSafe++;
 			}
 		}
+		safeTilesLeft = boardHeight*boardLength - numMines - flaggedSafe;
+	}
+	
+	/**
+	 * Place the mines of the layout given by seed and the first move at firstMoveIndex, as shuffleMines did.
+	 */
+	private void placeMines(long seed, int firstMoveIndex, boolean pooledLayout){
+		if( pooledLayout ){
+			board.placeMines(seed);
+			board.moveMine(firstMoveIndex);
+		} else {
+			board.placeMines(seed, firstMoveIndex);
+		}
 	}
 	
 	/** 
@@ -105,28 +682,45 @@ public class Minesweeper {
 	 * @param j
 	 */
 	public void flag(int i, int j){
+		long before = undoSteps == null ? 0 : packCounts();
+		if( metrics == null || gameOver ){
+			toggleFlag(i, j);
+		} else {
+			long start = System.nanoTime();
+			toggleFlag(i, j);
+			if( lastMove.size() > 0 ) metrics.recordFlag(System.nanoTime() - start);
+		}
+		if( lastMove.size() > 0 ) changed(before);
+	}
+	
+	private void toggleFlag(int i, int j){
+		lastMove.clear();
+		if( i<0 || j<0 || i>=boardHeight || j>=boardLength ) return;		// outside bounds
 		Tile tile = board.getTile(i, j);
 		if( tile == Tile.UNKNOWN){
 			board.setTile(i, j, Tile.FLAGGED);
+			lastMove.add(board.index(i, j), Tile.FLAGGED);
 			numFlags++;
+			if( !firstMove && !board.isMine(i,j) ) safeTilesLeft--;
 		} else if (tile == Tile.FLAGGED){
 			board.setTile(i, j, Tile.UNKNOWN);
+			lastMove.add(board.index(i, j), Tile.UNKNOWN);
 			numFlags--;
+			if( !firstMove && !board.isMine(i,j) ) safeTilesLeft++;
+		} else {
+			return;
 		}
+		if( recorder != null ) recorder.recordFlag(this, board.index(i, j));
 	}
 	
 	/** 
 	 * If all non-mine tiles are revealed (not UNKNOWN), game has been won and true is returned.
 	 * Otherwise, returns false.
+	 * This is a constant time check of safeTilesLeft, which revealTile and flag keep up to date.
 	 * @return boolean
 	 */
 	public boolean isGameWon(){
-		for( int i=0; i<boardHeight; i++){
-			for(int j=0; j<boardLength; j++){
-				if( (board.getTile(i,j) == Tile.UNKNOWN) && (minefield[i][j] == false) ) return false;		// if tile is unrevealed and not a mine, game is not over		
-			}
-		}
-		return true;
+		return safeTilesLeft == 0;
 	}
 	
 	/**
@@ -139,65 +733,107 @@ public class Minesweeper {
 	
 	/**
 	 * Reveal a tile (set it to its real value)
-	 * @param i
-	 * @param j
+	 * The tile must be UNKNOWN, since revealing a non-mine tile counts towards safeTilesLeft.
+	 * The number of bordering mines was counted by the board when the mines were placed, so this is a single lookup.
+	 * @param index flat index of the tile
 	 */
-	private void revealTile( int i, int j){
-		if( minefield[i][j] ){				// if tile is a mine
-			board.setTile(i,j, Tile.MINE);
-			return;
-		}
-		
-		// tile is not a mine, so count the number of mines around it
-		int numMines = 0;			// number of mines bordering the tile
-		for(int k=-1; k<2; k++){	// check board[i][j]'s horizontal, vertical, and diagonal neighbours
-			for( int l=-1; l<2; l++){
-				if( (i+k >= 0) && (i+k < boardHeight) && (j+l >=0) && (j+l < boardLength)  ){		// if index is within bounds
-					if( minefield[i+k][j+l] ) numMines++;	
-				}
-			}
-		}
-		
-		board.setTile(i,  j, Tile.getTile(numMines));		
+	private void revealTile(int index){
+		Tile tile = board.isMine(index) ? Tile.MINE : Tile.getTile(board.getNeighbourMines(index));
+		if( tile != Tile.MINE ) safeTilesLeft--;
+		board.setTile(index, tile);
+		lastMove.add(index, tile);
 	}
 	
 	/**
-	 * Reveal all 8 tiles around the tile at index i,j.
+	 * Reveal all 8 tiles around the tile at index i,j, and keep going through any empty tiles that are uncovered.
+	 * Uses an explicit stack of flat tile indices rather than recursion, so large open regions cannot overflow the call stack.
+	 * A tile is pushed only when it is revealed as EMPTY, so each tile is revealed and pushed at most once.
 	 * @param i
 	 * @param j
 	 */
 	private void revealNeighbours(int i, int j){
-		for(int k=-1; k<2; k++){	// check [i][j]'s horizontal, vertical, and diagonal neighbours
-			for( int l=-1; l<2; l++){
-				if( (i+k >= 0) && (i+k < boardHeight) && (j+l >=0) && (j+l < boardLength)  ){		// if index is within bounds
-					if( board.getTile(i+k, j+l) == Tile.UNKNOWN ){		// if tile is unknown, set it and check its neighbours
-						revealTile(i+k, j+l);	// reveal tile
-						if (board.getTile(i+k, j+l) == Tile.EMPTY) revealNeighbours(i+k, j+l); // if tile is empty, continue revealing its neighbours
+		int top = 0;
+		int deepest = 1;
+		revealStack = pushReveal(revealStack, top++, board.index(i, j));
+		while( top > 0 ){
+			int index = revealStack[--top];
+			int row = index / boardLength;
+			int col = index - row*boardLength;
+			int firstRow = Math.max(row-1, 0);					// clamp the 3x3 neighbourhood to the board once, instead of per neighbour
+			int lastRow = Math.min(row+1, boardHeight-1);
+			int firstCol = Math.max(col-1, 0);
+			int lastCol = Math.min(col+1, boardLength-1);
+			for( int k=firstRow; k<=lastRow; k++){
+				for( int l=firstCol; l<=lastCol; l++){
+					int neighbour = board.index(k, l);
+					if( board.getTile(neighbour) == Tile.UNKNOWN ){		// if tile is unknown, set it and check its neighbours
+						revealTile(neighbour);
+						if( board.getTile(neighbour) == Tile.EMPTY ){		// if tile is empty, continue revealing its neighbours
+							revealStack = pushReveal(revealStack, top++, neighbour);
+							if( top > deepest ) deepest = top;
+						}
 					}
 				}
 			}
 		}
+		fillDepth = deepest;
+	}
+	
+	/**
+	 * Store index at position top of stack, growing the stack if it is full.
+	 * The stack is kept between moves so a flood fill only allocates when it is deeper than any previous one.
+	 * @return the stack, which may be a new larger array
+	 */
+	private int[] pushReveal(int[] stack, int top, int index){
+		if( top == stack.length ){
+			stack = java.util.Arrays.copyOf(stack, Math.max(16, Math.min(stack.length*2, boardHeight*boardLength)));
+		}
+		stack[top] = index;
+		return stack;
 	}
 	
 	/** 
 	 * Reveal a block and its relevant neighbours.
 	 * If the block is not unknown (ex. flagged, empty, number is already known) do nothing.
 	 * If the game is over, return false. Otherwise return true
+	 * The tiles that were revealed are available from getLastMove() afterwards.
 	 * @param i
 	 * @param j
 	 */
 	public boolean makeMove(int i, int j){
-		if( i<0 || j<0 || i>boardHeight || j>boardLength ) return true;		// outside bounds
+		long before = undoSteps == null ? 0 : packCounts();
+		boolean gameContinues;
+		if( metrics == null || gameOver ){
+			gameContinues = move(i, j);
+		} else {
+			long start = System.nanoTime();
+			fillDepth = 0;
+			gameContinues = move(i, j);
+			long nanos = System.nanoTime() - start;
+			if( lastMove.size() > 0 ) metrics.recordMove(nanos, lastMove.size(), fillDepth);
+			if( !gameContinues ) metrics.recordGameOver(isGameWon());
+		}
+		if( !gameContinues ) gameOver = true;
+		if( lastMove.size() > 0 ) changed(before);
+		return gameContinues;
+	}
+	
+	private boolean move(int i, int j){
+		lastMove.clear();
+		if( i<0 || j<0 || i>=boardHeight || j>=boardLength ) return true;		// outside bounds
 		Tile tile = board.getTile(i, j);
 		if( tile != Tile.UNKNOWN ) return true;		// if value of tile is already known, do nothing and return
 		
 		// if first move, initialize the minefield (since first move should never be a mine.)
 		if( firstMove ) {
+			long start = metrics == null ? 0 : System.nanoTime();
 			shuffleMines( i, j );
 			firstMove = false;
+			if( metrics != null ) metrics.recordShuffle(System.nanoTime() - start);
 		}
+		if( recorder != null ) recorder.recordMove(this, board.index(i, j));		// after shuffleMines, which may change the seed
 		
-		revealTile(i,j);
+		revealTile(board.index(i,j));
 		
 		if( board.getTile(i,j)  == Tile.MINE){			// if a mine has been hit
 			return false;
@@ -0,0 +1,68 @@
+import java.util.Arrays;
+
+/**
+ * The tiles changed by the last move, so views can update only those tiles instead of the whole board.
+ * Changes are stored as a flat tile index (row*length + col) and the tile's new ordinal in two parallel primitive arrays.
+ * A game reuses the same MoveDelta for every move, so it is only valid until the next call to makeMove, flag or newGame.
+ * @author Rachel Wiens
+ */
+public class MoveDelta {
+	private static final Tile[] TILES = Tile.values();
+
+	private final int length;
+	private int size;
+	private int[] indices = new int[16];
+	private byte[] tiles = new byte[16];
+
+	MoveDelta(int length){
+		this.length = length;
+	}
+
+	void clear(){
+		size = 0;
+	}
+
+	void add(int index, Tile tile){
+		if( size == indices.length ){
+			indices = Arrays.copyOf(indices, size*2);
+			tiles = Arrays.copyOf(tiles, size*2);
+		}
+		indices[size] = index;
+		tiles[size] = (byte)tile.ordinal();
+		size++;
+	}
+
+	/**
+	 * Number of tiles that changed.
+	 * @return int
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Flat index (row*length + col) of the k-th changed tile.
+	 */
+	public int getIndex(int k){
+		return indices[k];
+	}
+
+	public int getRow(int k){
+		return indices[k] / length;
+	}
+
+	public int getCol(int k){
+		return indices[k] % length;
+	}
+
+	/**
+	 * New ordinal of the k-th changed tile. Tile.values()[code] is the tile.
+	 */
+	public int getTileCode(int k){
+		return tiles[k];
+	}
+
+	public Tile getTile(int k){
+		return TILES[tiles[k]];
+	}
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Plays a script of moves on a game without drawing anything, for CommandLineView's batch mode.
+ * A script has one action per line: a move as typed in playGame, "x y" or "x,y", or a flag, "f x y". Lines that are
+ * not actions are skipped. The script is parsed a byte at a time by a state machine that keeps its place between
+ * buffers, so a file can be fed in mapped chunks or a stream in reads of any size, and nothing is allocated per line.
+ * Playing stops when the game ends.
+ * @author Rachel Wiens
+ */
+class MoveScript {
+	private static final int MAP_CHUNK = 1 << 30;		// bytes of a file mapped at a time
+	private static final int MAX_COORDINATE = 1 << 30;		// larger numbers are clamped, which keeps them out of bounds
+
+	private final Minesweeper game;
+	private boolean gameOver;
+	private long movesApplied;
+	private long flagsApplied;
+	private long linesSkipped;
+	// the line being parsed
+	private boolean flag;
+	private int numbers;		// numbers finished so far
+	private boolean inNumber;
+	private boolean bad;		// the line is not an action
+	private int first;
+	private int value;
+
+	MoveScript(Minesweeper game){
+		this.game = game;
+	}
+
+	/**
+	 * Play the script in file, mapping it a chunk at a time.
+	 * @throws IOException
+	 */
+	void play(Path file) throws IOException {
+		try( FileChannel channel = FileChannel.open(file, StandardOpenOption.READ) ){
+			long size = channel.size();
+			for( long position=0; position<size && !gameOver; position+=MAP_CHUNK){
+				feed(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK, size - position)));
+			}
+		}
+		end();
+	}
+
+	/**
+	 * Play the script read from channel until it ends or the game does.
+	 * @throws IOException
+	 */
+	void play(ReadableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(65536);
+		while( !gameOver && channel.read(buffer) >= 0 ){
+			buffer.flip();
+			feed(buffer);
+			buffer.clear();
+		}
+		end();
+	}
+
+	/**
+	 * Parse and play the bytes remaining in buffer. A line may be split across calls.
+	 * @return false once the game is over
+	 */
+	boolean feed(ByteBuffer buffer){
+		int limit = buffer.limit();
+		for( int k=buffer.position(); k<limit && !gameOver; k++){
+			byte b = buffer.get(k);
+			if( b >= '0' && b <= '9' ){
+				if( !inNumber ){
+					if( numbers == 2 ) bad = true;
+					inNumber = true;
+					value = 0;
+				}
+				value = Math.min(value*10 + (b - '0'), MAX_COORDINATE);
+			} else if( b == '\n' ){
+				endLine();
+			} else if( b == ' ' || b == ',' || b == '\t' || b == '\r' ){
+				endNumber();
+			} else if( (b == 'f' || b == 'F') && !flag && numbers == 0 && !inNumber ){
+				flag = true;
+			} else {
+				bad = true;
+			}
+		}
+		buffer.position(limit);
+		return !gameOver;
+	}
+
+	/**
+	 * Play the last line if the script did not end with a line separator.
+	 */
+	void end(){
+		if( !gameOver && (inNumber || numbers > 0 || flag || bad) ) endLine();
+	}
+
+	private void endNumber(){
+		if( !inNumber ) return;
+		inNumber = false;
+		if( numbers++ == 0 ) first = value;
+	}
+
+	private void endLine(){
+		endNumber();
+		if( bad || numbers != 2 ){
+			if( bad || numbers > 0 || flag ) linesSkipped++;		// blank lines are not counted
+		} else if( flag ){
+			game.flag(first - 1, value - 1);		// the script counts from 1, like the player
+			flagsApplied++;
+		} else {
+			gameOver = !game.makeMove(first - 1, value - 1);
+			movesApplied++;
+		}
+		flag = false;
+		numbers = 0;
+		bad = false;
+	}
+
+	/**
+	 * True if the game ended, so the rest of the script was not played.
+	 */
+	boolean isGameOver(){
+		return gameOver;
+	}
+
+	long getMovesApplied(){
+		return movesApplied;
+	}
+
+	long getFlagsApplied(){
+		return flagsApplied;
+	}
+
+	/**
+	 * Number of non-blank lines that were not actions.
+	 */
+	long getLinesSkipped(){
+		return linesSkipped;
+	}
+}
@@ -0,0 +1,17 @@
+import java.util.SplittableRandom;
+
+/**
+ * A way of playing Minesweeper headlessly, for Simulator.
+ * Simulator gives each worker thread its own strategy, so implementations can keep per-game state without locking.
+ * @author Rachel Wiens
+ */
+public interface MoveStrategy {
+
+	/**
+	 * Play game, which has just been started with newGame, until it is won or lost.
+	 * @param game
+	 * @param random source of randomness for guesses, owned by the calling thread
+	 * @return the number of moves made, counting both reveals and flags
+	 */
+	int play(Minesweeper game, SplittableRandom random);
+}
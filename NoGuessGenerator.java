@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds mine layouts that Solver can clear from the first move without ever guessing.
+ * A layout is identified by the game seed, since Minesweeper places its mines from the seed and the first move. Worker
+ * threads each try random seeds, playing every candidate out with their own Minesweeper and Solver, and the first seed
+ * that solves is used. The other workers are then interrupted and stop before their next candidate.
+ * Which worker wins depends on timing, but the game records the winning seed, so getSeed() still reproduces the game.
+ * @author Rachel Wiens
+ */
+public class NoGuessGenerator {
+
+	/**
+	 * Candidates tried and time taken to generate boards of one size. The times are kept in a GameMetrics.Histogram, so
+	 * the stats stay the same size however many boards a long-running game generates.
+	 */
+	public static class Stats {
+		private long generations;
+		private long candidates;
+		private long failures;
+		private final GameMetrics.Histogram latency = new GameMetrics.Histogram();
+
+		private synchronized void add(long tried, boolean failed, long time){
+			generations++;
+			latency.record(time);
+			candidates += tried;
+			if( failed ) failures++;
+		}
+
+		public synchronized long getGenerations(){
+			return generations;
+		}
+
+		public synchronized long getCandidates(){
+			return candidates;
+		}
+
+		/**
+		 * Number of generations that gave up after maxCandidates, so the board may need a guess.
+		 */
+		public synchronized long getFailures(){
+			return failures;
+		}
+
+		public synchronized double getCandidatesPerBoard(){
+			return generations == 0 ? 0 : (double)candidates/generations;
+		}
+
+		/**
+		 * Generation time at percentile p (0 to 100), in nanoseconds to within 1/16, or 0 if nothing has been generated.
+		 */
+		public long getLatencyPercentile(double p){
+			return latency.getPercentile(p);
+		}
+
+		/**
+		 * Generation times, in nanoseconds.
+		 */
+		public GameMetrics.Histogram getLatency(){
+			return latency;
+		}
+	}
+
+	private final int threads;
+	private final long maxCandidates;
+	private final ExecutorService executor;
+	private final Map<String, Stats> stats = new HashMap<String, Stats>();
+
+	public NoGuessGenerator(){
+		this(Runtime.getRuntime().availableProcessors(), 1000000);
+	}
+
+	/**
+	 * @param threads number of worker threads
+	 * @param maxCandidates number of layouts to try before giving up on a board
+	 */
+	public NoGuessGenerator(int threads, long maxCandidates){
+		this.threads = threads;
+		this.maxCandidates = maxCandidates;
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "no-guess-generator");
+			thread.setDaemon(true);		// an idle generator must not keep the game running
+			return thread;
+		});
+	}
+
+	/**
+	 * Find the seed of a layout that Solver clears without guessing when the first move is at row, col.
+	 * If none is found within maxCandidates, seed itself is returned and the failure is counted in the stats.
+	 * @param length
+	 * @param height
+	 * @param mines
+	 * @param row row of the first move
+	 * @param col column of the first move
+	 * @param seed the workers' candidates are drawn from this seed
+	 * @return the seed to play
+	 */
+	public long findSeed(final int length, final int height, final int mines, final int row, final int col, long seed){
+		long start = System.nanoTime();
+		final AtomicLong tried = new AtomicLong();
+		SplittableRandom seeds = new SplittableRandom(seed);
+		List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+		for( int w=0; w<threads; w++){
+			final SplittableRandom random = seeds.split();
+			workers.add(() -> {
+				Minesweeper game = new Minesweeper(length, height, mines, seed);
+				Solver solver = null;
+				while( !Thread.currentThread().isInterrupted() && tried.getAndIncrement() < maxCandidates ){
+					long candidate = random.nextLong();
+					game.newGame(candidate);
+					game.makeMove(row, col);
+					if( solver == null ){
+						solver = new Solver(game);
+					} else {
+						solver.reset();
+					}
+					if( solver.solve() ) return candidate;
+				}
+				throw new IllegalStateException("No solvable layout found");
+			});
+		}
+
+		long result = seed;
+		boolean failed = false;
+		try {
+			result = executor.invokeAny(workers);		// cancels the other workers once one returns
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failed = true;
+		} catch (ExecutionException e) {
+			failed = true;
+		}
+		getStats(length, height, mines).add(Math.min(tried.get(), maxCandidates), failed, System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Stats for boards of the given size, which are empty until one has been generated.
+	 * @return Stats
+	 */
+	public Stats getStats(int length, int height, int mines){
+		synchronized( stats ){
+			return stats.computeIfAbsent(length + "x" + height + "/" + mines, key -> new Stats());
+		}
+	}
+
+	/**
+	 * Stop the worker threads. The generator cannot be used afterwards.
+	 */
+	public void shutdown(){
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Generate boards at the beginner, intermediate and expert presets, opening the centre tile, and print candidates
+	 * tried and latency percentiles.
+	 * Arguments: [boards per difficulty] [seed]
+	 * @param args
+	 */
+	public static void main(String[] args){
+		int boards = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+
+		Minesweeper presets = new Minesweeper();
+		Minesweeper[] difficulties = { presets.beginnerGame(), presets.intermediateGame(), presets.expertGame() };
+		String[] names = { "beginner", "intermediate", "expert" };
+		NoGuessGenerator generator = new NoGuessGenerator();
+		SplittableRandom seeds = new SplittableRandom(seed);
+		System.out.printf("%-14s %8s %12s %10s %10s %10s %10s %9s%n", "difficulty", "boards", "tried/board", "p50 ms", "p90 ms", "p99 ms", "max ms", "failures");
+		for( int d=0; d<difficulties.length; d++){
+			Minesweeper preset = difficulties[d];
+			int length = preset.getBoardLength();
+			int height = preset.getBoardHeight();
+			int mines = preset.getNumMines();
+			for( int b=0; b<boards; b++){
+				generator.findSeed(length, height, mines, height/2, length/2, seeds.nextLong());
+			}
+			Stats result = generator.getStats(length, height, mines);
+			System.out.printf("%-14s %8d %12.1f %10.3f %10.3f %10.3f %10.3f %9d%n", names[d], result.getGenerations(), result.getCandidatesPerBoard(),
+					result.getLatencyPercentile(50)/1e6, result.getLatencyPercentile(90)/1e6, result.getLatencyPercentile(99)/1e6,
+					result.getLatencyPercentile(100)/1e6, result.getFailures());
+		}
+		generator.shutdown();
+	}
+}
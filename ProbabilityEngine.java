@@ -0,0 +1,445 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the probability that each unknown tile is a mine, given the visible board and the number of mines left.
+ * Useful when Solver is stuck and a guess has to be made.
+ *
+ * The unknown tiles next to a revealed number (the frontier) are split into independent components: two tiles are in the
+ * same component if some number touches both. Each component's consistent mine layouts are enumerated on a ForkJoinPool,
+ * counting the layouts for each total number of mines in the component. The components are then combined with the
+ * remaining mines spread over the unknown tiles that touch no number, weighting each total by the number of ways to place
+ * the rest of the mines. Weights are kept as natural logarithms so boards with many components do not overflow.
+ *
+ * A component that needs more than nodeBudget search steps is estimated instead, by sampling its layouts with random
+ * restarts, each weighted by how unlikely it was to be reached, so every consistent layout counts equally on average.
+ * Results for those components are approximate; see isApproximate().
+ * Flags are trusted to be mines.
+ * @author Rachel Wiens
+ */
+public class ProbabilityEngine {
+	private static final int UNKNOWN = Tile.UNKNOWN.ordinal();
+	private static final int EMPTY = Tile.EMPTY.ordinal();
+	private static final int MINE = Tile.MINE.ordinal();
+	private static final int FLAGGED = Tile.FLAGGED.ordinal();
+
+	private final ForkJoinPool pool;
+	private final long nodeBudget;
+	private final int samples;
+	private int components;
+	private int frontierSize;
+	private boolean approximate;
+
+	public ProbabilityEngine(){
+		this(ForkJoinPool.commonPool(), 1L << 24, 2000);
+	}
+
+	/**
+	 * @param pool pool to enumerate components on
+	 * @param nodeBudget search steps allowed per component before it is sampled instead
+	 * @param samples number of layouts sampled to estimate a component that is over budget
+	 */
+	public ProbabilityEngine(ForkJoinPool pool, long nodeBudget, int samples){
+		this.pool = pool;
+		this.nodeBudget = nodeBudget;
+		this.samples = samples;
+	}
+
+	/**
+	 * Number of frontier components in the last board.
+	 */
+	public int getComponents(){
+		return components;
+	}
+
+	/**
+	 * Number of unknown tiles next to a revealed number in the last board.
+	 */
+	public int getFrontierSize(){
+		return frontierSize;
+	}
+
+	/**
+	 * True if any component of the last board was over budget and had to be sampled. The sampled estimates are unbiased,
+	 * but vary with the number of samples, most on large components. If no layout of a component was found within the
+	 * budget, every probability is NaN, as for a board with no consistent layout.
+	 */
+	public boolean isApproximate(){
+		return approximate;
+	}
+
+	public double[] computeProbabilities(Minesweeper game){
+		return computeProbabilities(game.getBoard(), game.getMinesLeft());
+	}
+
+	/**
+	 * Compute mine probabilities for every tile.
+	 * @param board visible board
+	 * @param minesLeft number of mines that are not flagged
+	 * @return the probability that each tile is a mine, by flat index (row*length + col). Tiles that are not unknown are NaN,
+	 *         and so is every tile if no layout of the mines is consistent with the board.
+	 */
+	public double[] computeProbabilities(Tile[][] board, int minesLeft){
+		int height = board.length;
+		int length = height == 0 ? 0 : board[0].length;
+		byte[] tiles = new byte[height*length];
+		for( int i=0; i<height; i++){
+			for( int j=0; j<length; j++){
+				tiles[i*length + j] = (byte)board[i][j].ordinal();
+			}
+		}
+
+		// constraints from each revealed number with unknown neighbours, and the frontier tiles they join together
+		int[] parent = new int[tiles.length];		// union-find over flat indices, -1 for tiles not on the frontier
+		Arrays.fill(parent, -1);
+		List<int[]> constraints = new ArrayList<int[]>();		// need, then the flat indices of the unknown neighbours
+		int[] neighbours = new int[8];
+		for( int index=0; index<tiles.length; index++){
+			int tile = tiles[index];
+			if( tile <= EMPTY || tile >= MINE ) continue;
+			int row = index / length;
+			int col = index - row*length;
+			int need = tile - EMPTY;
+			int count = 0;
+			for( int i=Math.max(row-1, 0); i<=Math.min(row+1, height-1); i++){
+				for( int j=Math.max(col-1, 0); j<=Math.min(col+1, length-1); j++){
+					int neighbour = i*length + j;
+					if( tiles[neighbour] == FLAGGED ) need--;
+					else if( tiles[neighbour] == UNKNOWN ) neighbours[count++] = neighbour;
+				}
+			}
+			if( count == 0 ) continue;
+			int[] constraint = new int[count+1];
+			constraint[0] = need;
+			for( int k=0; k<count; k++){
+				constraint[k+1] = neighbours[k];
+				if( parent[neighbours[k]] < 0 ) parent[neighbours[k]] = neighbours[k];
+				union(parent, neighbours[0], neighbours[k]);
+			}
+			constraints.add(constraint);
+		}
+
+		// number the components, and count the frontier tiles and the unknown tiles that touch no number
+		int[] componentOf = new int[tiles.length];
+		List<Component> list = new ArrayList<Component>();
+		List<List<int[]>> componentConstraints = new ArrayList<List<int[]>>();
+		int interior = 0;
+		frontierSize = 0;
+		for( int index=0; index<tiles.length; index++){
+			if( tiles[index] != UNKNOWN ) continue;
+			if( parent[index] < 0 ){
+				interior++;
+				continue;
+			}
+			frontierSize++;
+			if( find(parent, index) == index ){
+				componentOf[index] = list.size();
+				list.add(new Component());
+				componentConstraints.add(new ArrayList<int[]>());
+			}
+		}
+		for( int[] constraint : constraints ){
+			componentConstraints.get(componentOf[find(parent, constraint[1])]).add(constraint);
+		}
+		for( int c=0; c<list.size(); c++){
+			list.get(c).init(componentConstraints.get(c), nodeBudget, samples, c);
+		}
+		components = list.size();
+
+		// enumerate every component in parallel
+		final List<Component> tasks = list;
+		pool.invoke(new RecursiveAction(){
+			private static final long serialVersionUID = 1L;
+
+			protected void compute(){
+				invokeAll(tasks);
+			}
+		});
+
+		approximate = false;
+		for( Component component : list ) approximate |= component.sampled;
+		return combine(list, tiles, interior, minesLeft);
+	}
+
+	/**
+	 * Combine the per-component layout counts with the mines left for the interior tiles.
+	 */
+	private static double[] combine(List<Component> list, byte[] tiles, int interior, int minesLeft){
+		double[] probabilities = new double[tiles.length];
+		Arrays.fill(probabilities, Double.NaN);
+		int n = list.size();
+
+		// prefix[c] is the log count of layouts of components 0..c-1 by total mines, suffix[c] of components c..n-1
+		double[][] prefix = new double[n+1][];
+		double[][] suffix = new double[n+1][];
+		prefix[0] = new double[]{0};
+		suffix[n] = new double[]{0};
+		for( int c=0; c<n; c++) prefix[c+1] = convolve(prefix[c], list.get(c).logCounts);
+		for( int c=n-1; c>=0; c--) suffix[c] = convolve(list.get(c).logCounts, suffix[c+1]);
+
+		// weight of each frontier total K: ways to put the other minesLeft-K mines in the interior
+		double[] logFactorials = new double[interior+1];
+		for( int i=1; i<=interior; i++) logFactorials[i] = logFactorials[i-1] + Math.log(i);
+		double[] all = prefix[n];
+		double[] logWays = new double[all.length];
+		double logTotal = Double.NEGATIVE_INFINITY;
+		double interiorMines = Double.NEGATIVE_INFINITY;		// log of sum over K of weight * (minesLeft-K)
+		for( int k=0; k<all.length; k++){
+			logWays[k] = logChoose(logFactorials, interior, minesLeft - k);
+			logTotal = logAdd(logTotal, all[k] + logWays[k]);
+			if( minesLeft - k > 0 ) interiorMines = logAdd(interiorMines, all[k] + logWays[k] + Math.log(minesLeft - k));
+		}
+		if( logTotal == Double.NEGATIVE_INFINITY ) return probabilities;		// no consistent layout
+
+		for( int c=0; c<n; c++){
+			Component component = list.get(c);
+			double[] others = convolve(prefix[c], suffix[c+1]);
+			for( int t=0; t<component.tiles.length; t++){
+				double logMine = Double.NEGATIVE_INFINITY;
+				double[] tileCounts = component.logTileCounts[t];
+				for( int k=0; k<tileCounts.length; k++){
+					if( tileCounts[k] == Double.NEGATIVE_INFINITY ) continue;
+					for( int o=0; o<others.length && k+o<logWays.length; o++){
+						logMine = logAdd(logMine, tileCounts[k] + others[o] + logWays[k+o]);
+					}
+				}
+				probabilities[component.tiles[t]] = Math.exp(logMine - logTotal);
+			}
+		}
+
+		double interiorProbability = (interior == 0) ? 0 : Math.exp(interiorMines - logTotal) / interior;
+		for( int index=0; index<tiles.length; index++){
+			if( tiles[index] == UNKNOWN && Double.isNaN(probabilities[index]) ) probabilities[index] = interiorProbability;
+		}
+		return probabilities;
+	}
+
+	/**
+	 * One frontier component: its tiles, the constraints on them, and after compute() the log count of layouts by number of mines.
+	 */
+	private static class Component extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		int[] tiles;				// flat indices, in search order
+		int[] need;					// mines still needed by each constraint
+		int[] unassigned;			// tiles of each constraint not assigned yet
+		int[][] constraintsOf;		// constraints each tile (by search position) belongs to
+		int[] originalNeed;
+		int[] originalUnassigned;
+		long nodeBudget;
+		int samples;
+		long seed;
+		boolean sampled;
+		double[] logCounts;			// log of layouts with k mines
+		double[][] logTileCounts;	// log of layouts with k mines in which tile t is a mine
+
+		void init(List<int[]> constraints, long nodeBudget, int samples, long seed){
+			this.nodeBudget = nodeBudget;
+			this.samples = samples;
+			this.seed = seed;
+			// search tiles in order of their first constraint, so constraints are completed early and prune the search
+			List<Integer> order = new ArrayList<Integer>();
+			java.util.HashMap<Integer, Integer> positions = new java.util.HashMap<Integer, Integer>();
+			for( int[] constraint : constraints ){
+				for( int k=1; k<constraint.length; k++){
+					if( !positions.containsKey(constraint[k]) ){
+						positions.put(constraint[k], order.size());
+						order.add(constraint[k]);
+					}
+				}
+			}
+			tiles = new int[order.size()];
+			for( int t=0; t<tiles.length; t++) tiles[t] = order.get(t);
+			originalNeed = new int[constraints.size()];
+			originalUnassigned = new int[constraints.size()];
+			int[] counts = new int[tiles.length];
+			for( int c=0; c<constraints.size(); c++){
+				int[] constraint = constraints.get(c);
+				originalNeed[c] = constraint[0];
+				originalUnassigned[c] = constraint.length - 1;
+				for( int k=1; k<constraint.length; k++) counts[positions.get(constraint[k])]++;
+			}
+			constraintsOf = new int[tiles.length][];
+			for( int t=0; t<tiles.length; t++) constraintsOf[t] = new int[counts[t]];
+			Arrays.fill(counts, 0);
+			for( int c=0; c<constraints.size(); c++){
+				int[] constraint = constraints.get(c);
+				for( int k=1; k<constraint.length; k++){
+					int t = positions.get(constraint[k]);
+					constraintsOf[t][counts[t]++] = c;
+				}
+			}
+		}
+
+		protected void compute(){
+			double[] counts = new double[tiles.length+1];
+			double[][] tileCounts = new double[tiles.length][tiles.length+1];
+			if( search(counts, tileCounts, nodeBudget) ){
+				logCounts = log(counts);
+				logTileCounts = new double[tiles.length][];
+				for( int t=0; t<tiles.length; t++) logTileCounts[t] = log(tileCounts[t]);
+			} else {
+				// over budget: estimate the counts from sampled layouts instead
+				sampled = true;
+				logCounts = new double[tiles.length+1];
+				Arrays.fill(logCounts, Double.NEGATIVE_INFINITY);
+				logTileCounts = new double[tiles.length][tiles.length+1];
+				for( double[] row : logTileCounts ) Arrays.fill(row, Double.NEGATIVE_INFINITY);
+				sample(new SplittableRandom(seed), nodeBudget + (long)samples*tiles.length);
+			}
+		}
+
+		/**
+		 * Depth first search over mine/safe assignments, with an explicit stack so large components cannot overflow the call
+		 * stack. Every consistent layout is counted.
+		 * @return false if the search ran out of budget before it finished
+		 */
+		private boolean search(double[] counts, double[][] tileCounts, long budget){
+			int n = tiles.length;
+			need = originalNeed.clone();
+			unassigned = originalUnassigned.clone();
+			int[] value = new int[n];		// value applied at each depth, or -1
+			int[] tried = new int[n];		// number of values tried at each depth
+			Arrays.fill(value, -1);
+			int mines = 0;
+			long nodes = 0;
+			int depth = 0;
+			while( depth >= 0 ){
+				if( depth == n ){
+					counts[mines]++;
+					for( int t=0; t<n; t++) if( value[t] == 1 ) tileCounts[t][mines]++;
+					depth--;
+					continue;
+				}
+				if( value[depth] >= 0 ){
+					mines -= value[depth];
+					assign(depth, value[depth], -1);
+					value[depth] = -1;
+				}
+				if( tried[depth] == 2 ){
+					tried[depth] = 0;
+					depth--;
+					continue;
+				}
+				if( ++nodes > budget ) return false;
+				int v = tried[depth]++;
+				if( feasible(depth, v) ){
+					assign(depth, v, 1);
+					value[depth] = v;
+					mines += v;
+					depth++;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Estimate logCounts and logTileCounts from up to samples layouts, in at most budget steps.
+		 * Each layout is built tile by tile, choosing uniformly between the values the tile's constraints allow, and is
+		 * started again from the first tile whenever a tile allows neither. A layout reached with c choices between two
+		 * values had probability 2^-c of being built, so it is counted with weight 2^c, which makes every consistent layout
+		 * count once on average. Counting the first layouts a randomized search finds instead would favour the layouts that
+		 * are easiest to reach. The weights are added as logarithms, since c can be in the hundreds.
+		 */
+		private void sample(SplittableRandom random, long budget){
+			int n = tiles.length;
+			need = new int[originalNeed.length];
+			unassigned = new int[originalUnassigned.length];
+			int[] value = new int[n];
+			long nodes = 0;
+			for( int s=0; s<samples && nodes<budget; ){
+				System.arraycopy(originalNeed, 0, need, 0, need.length);
+				System.arraycopy(originalUnassigned, 0, unassigned, 0, unassigned.length);
+				int mines = 0;
+				int choices = 0;
+				int t = 0;
+				for( ; t<n; t++, nodes++){
+					boolean mine = feasible(t, 1);
+					boolean safe = feasible(t, 0);
+					if( !mine && !safe ) break;		// a dead end, so start again
+					if( mine && safe ) choices++;
+					value[t] = (mine && safe) ? random.nextInt(2) : mine ? 1 : 0;
+					assign(t, value[t], 1);
+					mines += value[t];
+				}
+				if( t < n ) continue;
+				double logWeight = choices*Math.log(2);
+				logCounts[mines] = logAdd(logCounts[mines], logWeight);
+				for( t=0; t<n; t++) if( value[t] == 1 ) logTileCounts[t][mines] = logAdd(logTileCounts[t][mines], logWeight);
+				s++;
+			}
+		}
+
+		/**
+		 * True if tile t can take value without breaking any of its constraints.
+		 */
+		private boolean feasible(int t, int value){
+			for( int c : constraintsOf[t] ){
+				if( value == 1 ? (need[c] < 1 || need[c] > unassigned[c]) : (need[c] > unassigned[c] - 1) ) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Apply (direction 1) or undo (direction -1) giving tile t the value.
+		 */
+		private void assign(int t, int value, int direction){
+			for( int c : constraintsOf[t] ){
+				need[c] -= value*direction;
+				unassigned[c] -= direction;
+			}
+		}
+	}
+
+	private static double[] log(double[] counts){
+		double[] logs = new double[counts.length];
+		for( int k=0; k<counts.length; k++) logs[k] = Math.log(counts[k]);		// log(0) is -infinity, which logAdd treats as zero
+		return logs;
+	}
+
+	/**
+	 * Convolution of two log count arrays: result[k] = log sum over i+j=k of exp(a[i] + b[j]).
+	 */
+	private static double[] convolve(double[] a, double[] b){
+		double[] result = new double[a.length + b.length - 1];
+		Arrays.fill(result, Double.NEGATIVE_INFINITY);
+		for( int i=0; i<a.length; i++){
+			if( a[i] == Double.NEGATIVE_INFINITY ) continue;
+			for( int j=0; j<b.length; j++){
+				result[i+j] = logAdd(result[i+j], a[i] + b[j]);
+			}
+		}
+		return result;
+	}
+
+	private static double logAdd(double a, double b){
+		if( a == Double.NEGATIVE_INFINITY ) return b;
+		if( b == Double.NEGATIVE_INFINITY ) return a;
+		return Math.max(a, b) + Math.log1p(Math.exp(-Math.abs(a - b)));
+	}
+
+	/**
+	 * log of n choose k, or -infinity if k is out of range.
+	 * @param logFactorials log of i! for i from 0 to n
+	 */
+	private static double logChoose(double[] logFactorials, int n, int k){
+		if( k < 0 || k > n ) return Double.NEGATIVE_INFINITY;
+		return logFactorials[n] - logFactorials[k] - logFactorials[n-k];
+	}
+
+	private static int find(int[] parent, int index){
+		while( parent[index] != index ){
+			parent[index] = parent[parent[index]];
+			index = parent[index];
+		}
+		return index;
+	}
+
+	private static void union(int[] parent, int a, int b){
+		parent[find(parent, a)] = find(parent, b);
+	}
+}
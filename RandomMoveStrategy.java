@@ -0,0 +1,33 @@
+import java.util.SplittableRandom;
+
+/**
+ * Reveals unknown tiles at random until the game is over. A baseline for the other strategies.
+ * @author Rachel Wiens
+ */
+public class RandomMoveStrategy implements MoveStrategy {
+
+	public int play(Minesweeper game, SplittableRandom random){
+		int moves = 0;
+		boolean gameContinues = true;
+		while( gameContinues ){
+			gameContinues = revealRandomUnknown(game, random);
+			moves++;
+		}
+		return moves;
+	}
+
+	/**
+	 * Reveal a random tile that is still UNKNOWN, found by trying random tiles.
+	 * The game must not be over, so there is at least one unknown tile.
+	 * @return the result of makeMove
+	 */
+	static boolean revealRandomUnknown(Minesweeper game, SplittableRandom random){
+		int height = game.getBoardHeight();
+		int length = game.getBoardLength();
+		while( true ){
+			int i = random.nextInt(height);
+			int j = random.nextInt(length);
+			if( game.getTile(i, j) == Tile.UNKNOWN ) return game.makeMove(i, j);
+		}
+	}
+}
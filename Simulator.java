@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Plays many headless games across all cores and reports win rate, moves per game and games per second.
+ * Each worker thread has its own Minesweeper, reused through newGame(seed), its own MoveStrategy and its own
+ * SplittableRandom split from the run's seed, and keeps its own totals until the end. Workers share nothing while
+ * they play, so runs are reproducible for a given seed and thread count.
+ * @author Rachel Wiens
+ */
+public class Simulator {
+
+	/**
+	 * Totals for one run.
+	 */
+	public static class Result {
+		private long games;
+		private long wins;
+		private long moves;
+		private long nanos;
+
+		public long getGames(){
+			return games;
+		}
+
+		public long getWins(){
+			return wins;
+		}
+
+		public double getWinRate(){
+			return games == 0 ? 0 : (double)wins/games;
+		}
+
+		public double getMovesPerGame(){
+			return games == 0 ? 0 : (double)moves/games;
+		}
+
+		public double getGamesPerSecond(){
+			return nanos == 0 ? 0 : games*1e9/nanos;
+		}
+
+		private void add(Result other){
+			games += other.games;
+			wins += other.wins;
+			moves += other.moves;
+		}
+	}
+
+	private final int threads;
+
+	public Simulator(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public Simulator(int threads){
+		this.threads = threads;
+	}
+
+	/**
+	 * Play games on boards of the given size.
+	 * @param length
+	 * @param height
+	 * @param mines
+	 * @param games total number of games, split between the workers
+	 * @param seed seed for the whole run
+	 * @param strategies creates one strategy for each worker
+	 * @return Result
+	 */
+	public Result run(final int length, final int height, final int mines, long games, long seed, final Supplier<? extends MoveStrategy> strategies){
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		SplittableRandom seeds = new SplittableRandom(seed);
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		long start = System.nanoTime();
+		for( int w=0; w<threads; w++){
+			final long workerGames = games/threads + (w < games%threads ? 1 : 0);
+			final SplittableRandom random = seeds.split();
+			futures.add(executor.submit(() -> {
+				Result result = new Result();
+				Minesweeper game = new Minesweeper(length, height, mines, random.nextLong());
+				MoveStrategy strategy = strategies.get();
+				for( long g=0; g<workerGames; g++){
+					game.newGame(random.nextLong());
+					result.moves += strategy.play(game, random);
+					if( game.isGameWon() ) result.wins++;
+					result.games++;
+				}
+				return result;
+			}));
+		}
+
+		Result total = new Result();
+		try {
+			for( Future<Result> future : futures ) total.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Simulation was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Simulation failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		total.nanos = System.nanoTime() - start;
+		return total;
+	}
+
+	/**
+	 * Run the beginner, intermediate and expert presets, or one board of the given size, playing the given number of
+	 * games on each.
+	 * Arguments: [games per difficulty] [random|solver] [seed] [length height mines]
+	 * @param args
+	 */
+	public static void main(String[] args){
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		final boolean random = args.length > 1 && args[1].equals("random");
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+
+		Minesweeper[] difficulties;
+		String[] names;
+		if( args.length > 5 ){
+			difficulties = new Minesweeper[]{ new Minesweeper(Integer.parseInt(args[3]), Integer.parseInt(args[4]), Integer.parseInt(args[5])) };
+			names = new String[]{ args[3] + "x" + args[4] + "/" + args[5] };
+		} else {
+			Minesweeper presets = new Minesweeper();
+			difficulties = new Minesweeper[]{ presets.beginnerGame(), presets.intermediateGame(), presets.expertGame() };
+			names = new String[]{ "beginner", "intermediate", "expert" };
+		}
+		Simulator simulator = new Simulator();
+		System.out.printf("%-14s %10s %9s %12s %14s%n", "difficulty", "games", "win rate", "moves/game", "games/s");
+		for( int d=0; d<difficulties.length; d++){
+			Minesweeper preset = difficulties[d];
+			Result result = simulator.run(preset.getBoardLength(), preset.getBoardHeight(), preset.getNumMines(), games, seed,
+					() -> random ? new RandomMoveStrategy() : new SolverMoveStrategy());
+			System.out.printf("%-14s %10d %8.2f%% %12.1f %,14.0f%n", names[d], result.getGames(), 100*result.getWinRate(), result.getMovesPerGame(), result.getGamesPerSecond());
+		}
+	}
+}
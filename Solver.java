@@ -0,0 +1,283 @@
+import java.util.Arrays;
+
+/**
+ * Deterministic Minesweeper solver that only makes moves it can prove are safe.
+ * It applies two rules to the revealed numbers on the frontier:
+ *  - single tile: if a number already has all its mines flagged, its other unknown neighbours are safe. If it has exactly
+ *    as many unknown neighbours as unflagged mines, they are all mines.
+ *  - subset: if the unknown neighbours of number A are a subset of those of a nearby number B, then B's remaining
+ *    unknown neighbours hold the difference of their unflagged mines, which may make them all safe or all mines.
+ * It is incremental: after each move it only re-examines the numbers around the tiles the move changed, using
+ * Minesweeper.getLastMove(), so solving a board takes time close to linear in the number of tiles.
+ * Flags already on the board are trusted to be mines.
+ * @author Rachel Wiens
+ */
+public class Solver {
+	private static final int UNKNOWN = Tile.UNKNOWN.ordinal();
+	private static final int EMPTY = Tile.EMPTY.ordinal();
+	private static final int MINE = Tile.MINE.ordinal();
+	private static final int FLAGGED = Tile.FLAGGED.ordinal();
+
+	private final Minesweeper game;
+	private final int boardHeight;
+	private final int boardLength;
+	private final byte[] tiles;		// ordinal of each visible tile, kept up to date from each move's delta
+	private final int[] queue;		// ring buffer of flat indices of numbers whose neighbourhood has changed
+	private final boolean[] queued;
+	private int head;
+	private int size;
+	private boolean gameOver;
+	private long movesMade;
+	private long flagsPlaced;
+	private long tilesRevealed;
+
+	// scratch space for the neighbourhoods being compared, so the solver does not allocate while it runs
+	private final int[] unknownsA = new int[8];
+	private final int[] unknownsB = new int[8];
+	private final int[] difference = new int[8];
+
+	/**
+	 * Create a solver for game, reading its current board once.
+	 * @param game
+	 */
+	public Solver(Minesweeper game){
+		this.game = game;
+		boardHeight = game.getBoardHeight();
+		boardLength = game.getBoardLength();
+		tiles = new byte[boardHeight*boardLength];
+		queue = new int[tiles.length];
+		queued = new boolean[tiles.length];
+		reset();
+	}
+
+	/**
+	 * Read the game's board again and clear the counters, e.g. after newGame(). Nothing is allocated, so a solver can be reused for many games.
+	 */
+	public void reset(){
+		Arrays.fill(queued, false);
+		head = size = 0;
+		gameOver = false;
+		resetCounters();
+		for( int i=0; i<boardHeight; i++){
+			for( int j=0; j<boardLength; j++){
+				Tile tile = game.getTile(i, j);
+				tiles[i*boardLength + j] = (byte)tile.ordinal();
+				if( tile == Tile.MINE ) gameOver = true;
+			}
+		}
+		for( int index=0; index<tiles.length; index++){
+			enqueue(index);
+		}
+	}
+
+	/**
+	 * Make safe moves and flag certain mines until nothing more can be deduced or the game is over.
+	 * The game must have been started with a first move, since nothing can be deduced from an empty board.
+	 * @return true if the game has been won
+	 */
+	public boolean solve(){
+		while( size > 0 && !gameOver ){
+			int index = queue[head];
+			head = (head + 1 == queue.length) ? 0 : head + 1;
+			size--;
+			queued[index] = false;
+			examine(index);
+		}
+		return game.isGameWon();
+	}
+
+	/**
+	 * Set the moves, flags and tiles revealed back to 0.
+	 */
+	public void resetCounters(){
+		movesMade = flagsPlaced = tilesRevealed = 0;
+	}
+
+	public Minesweeper getGame(){
+		return game;
+	}
+
+	/**
+	 * True if the last call to solve stopped because the game ended rather than because it got stuck.
+	 * @return boolean
+	 */
+	public boolean isGameOver(){
+		return gameOver;
+	}
+
+	/**
+	 * Number of tiles revealed by the solver's moves, including flood fills.
+	 */
+	public long getTilesRevealed(){
+		return tilesRevealed;
+	}
+
+	public long getMovesMade(){
+		return movesMade;
+	}
+
+	public long getFlagsPlaced(){
+		return flagsPlaced;
+	}
+
+	/**
+	 * Tell the solver about a move made on the game by someone else, so it can update its copy of the board.
+	 * @param move the game's last move
+	 */
+	public void update(MoveDelta move){
+		for( int k=0; k<move.size(); k++){
+			int index = move.getIndex(k);
+			tiles[index] = (byte)move.getTileCode(k);
+			if( move.getTileCode(k) == MINE ) gameOver = true;
+			// this tile's neighbours (and the tile itself) are the only numbers whose constraints changed
+			int row = index / boardLength;
+			int col = index - row*boardLength;
+			int lastRow = Math.min(row+1, boardHeight-1);
+			int lastCol = Math.min(col+1, boardLength-1);
+			for( int i=Math.max(row-1, 0); i<=lastRow; i++){
+				for( int j=Math.max(col-1, 0); j<=lastCol; j++){
+					enqueue(i*boardLength + j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Apply both rules to the number at index.
+	 */
+	private void examine(int index){
+		int need = unflaggedMines(index);
+		if( need < 0 ) return;
+		int unknowns = unknownNeighbours(index, unknownsA);
+		if( unknowns == 0 ) return;
+		if( need == 0 ){
+			reveal(unknownsA, unknowns);
+			return;
+		}
+		if( need == unknowns ){
+			flag(unknownsA, unknowns);
+			return;
+		}
+
+		// subset rule against every number close enough to share an unknown neighbour
+		int row = index / boardLength;
+		int col = index - row*boardLength;
+		int lastRow = Math.min(row+2, boardHeight-1);
+		int lastCol = Math.min(col+2, boardLength-1);
+		for( int i=Math.max(row-2, 0); i<=lastRow; i++){
+			for( int j=Math.max(col-2, 0); j<=lastCol; j++){
+				int other = i*boardLength + j;
+				if( other == index ) continue;
+				int otherNeed = unflaggedMines(other);
+				if( otherNeed < 0 ) continue;
+				int otherUnknowns = unknownNeighbours(other, unknownsB);
+				if( otherUnknowns == 0 ) continue;
+				if( applySubset(unknownsA, unknowns, need, unknownsB, otherUnknowns, otherNeed) ) return;
+				if( applySubset(unknownsB, otherUnknowns, otherNeed, unknownsA, unknowns, need) ) return;
+			}
+		}
+	}
+
+	/**
+	 * If small is a subset of large, the tiles only in large hold largeNeed - smallNeed mines. Reveal or flag them if that decides them.
+	 * @return true if any move was made
+	 */
+	private boolean applySubset(int[] small, int smallCount, int smallNeed, int[] large, int largeCount, int largeNeed){
+		if( smallCount >= largeCount ) return false;
+		int differenceCount = 0;
+		int matched = 0;
+		for( int b=0; b<largeCount; b++){
+			boolean found = false;
+			for( int a=0; a<smallCount; a++){
+				if( small[a] == large[b] ){
+					found = true;
+					break;
+				}
+			}
+			if( found ) matched++;
+			else difference[differenceCount++] = large[b];
+		}
+		if( matched != smallCount ) return false;		// not a subset
+
+		int mines = largeNeed - smallNeed;
+		if( mines == 0 ){
+			reveal(difference, differenceCount);
+			return true;
+		}
+		if( mines == differenceCount ){
+			flag(difference, differenceCount);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Number of mines around the revealed number at index that are not flagged yet, or -1 if index is not a revealed number.
+	 */
+	private int unflaggedMines(int index){
+		int tile = tiles[index];
+		if( tile <= EMPTY || tile >= MINE ) return -1;		// unknown, empty, mine or flagged
+		int row = index / boardLength;
+		int col = index - row*boardLength;
+		int flags = 0;
+		int lastRow = Math.min(row+1, boardHeight-1);
+		int lastCol = Math.min(col+1, boardLength-1);
+		for( int i=Math.max(row-1, 0); i<=lastRow; i++){
+			for( int j=Math.max(col-1, 0); j<=lastCol; j++){
+				if( tiles[i*boardLength + j] == FLAGGED ) flags++;
+			}
+		}
+		return (tile - EMPTY) - flags;
+	}
+
+	/**
+	 * Store the flat indices of the unknown tiles around index in unknowns, in index order.
+	 * @return the number of unknown neighbours
+	 */
+	private int unknownNeighbours(int index, int[] unknowns){
+		int row = index / boardLength;
+		int col = index - row*boardLength;
+		int count = 0;
+		int lastRow = Math.min(row+1, boardHeight-1);
+		int lastCol = Math.min(col+1, boardLength-1);
+		for( int i=Math.max(row-1, 0); i<=lastRow; i++){
+			for( int j=Math.max(col-1, 0); j<=lastCol; j++){
+				if( tiles[i*boardLength + j] == UNKNOWN ) unknowns[count++] = i*boardLength + j;
+			}
+		}
+		return count;
+	}
+
+	private void reveal(int[] indices, int count){
+		for( int k=0; k<count && !gameOver; k++){
+			int index = indices[k];
+			if( tiles[index] != UNKNOWN ) continue;		// already opened by an earlier flood fill
+			boolean gameContinues = game.makeMove(index / boardLength, index % boardLength);
+			movesMade++;
+			tilesRevealed += game.getLastMove().size();
+			update(game.getLastMove());
+			if( !gameContinues ) gameOver = true;
+		}
+	}
+
+	private void flag(int[] indices, int count){
+		for( int k=0; k<count; k++){
+			int index = indices[k];
+			if( tiles[index] != UNKNOWN ) continue;
+			game.flag(index / boardLength, index % boardLength);
+			flagsPlaced++;
+			update(game.getLastMove());
+		}
+	}
+
+	private void enqueue(int index){
+		if( queued[index] ) return;
+		int tile = tiles[index];
+		if( tile <= EMPTY || tile >= MINE ) return;		// only revealed numbers have constraints
+		queued[index] = true;
+		int tail = head + size;
+		queue[tail >= queue.length ? tail - queue.length : tail] = index;
+		size++;
+	}
+
+}
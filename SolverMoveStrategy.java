@@ -0,0 +1,29 @@
+import java.util.SplittableRandom;
+
+/**
+ * Opens the centre tile, then lets Solver make every move it can prove and guesses a random unknown tile whenever it gets stuck.
+ * @author Rachel Wiens
+ */
+public class SolverMoveStrategy implements MoveStrategy {
+	private Solver solver;		// reused between games on the same Minesweeper
+
+	public int play(Minesweeper game, SplittableRandom random){
+		int moves = 1;
+		boolean gameContinues = game.makeMove(game.getBoardHeight()/2, game.getBoardLength()/2);
+		if( solver == null || solver.getGame() != game ){
+			solver = new Solver(game);
+		} else {
+			solver.reset();
+		}
+		while( gameContinues ){
+			boolean won = solver.solve();
+			moves += solver.getMovesMade() + solver.getFlagsPlaced();
+			if( won || solver.isGameOver() ) break;
+			gameContinues = RandomMoveStrategy.revealRandomUnknown(game, random);		// stuck, so guess
+			moves++;
+			solver.resetCounters();
+			solver.update(game.getLastMove());
+		}
+		return moves;
+	}
+}
@@ -0,0 +1,104 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import javax.swing.UIManager;
+
+/**
+ * Pre-rendered images of every tile, enabled and disabled, at one tile size.
+ * Images are rendered at the device scale (e.g. 2x on HiDPI screens), so painting a tile is a single drawImage
+ * that copies pixels 1:1. BoardCanvas keeps one of these and rebuilds it only when the tile size, scale or font changes.
+ * @author Rachel Wiens
+ */
+class TileSprites {
+	private static final Color TILE_ENABLED_HIGHLIGHT_COLOR = new Color(148, 146, 214);
+	private static final Color TILE_ENABLED_SHADOW_COLOR = new Color(97, 95, 176);
+	private static final Color TILE_DISABLED_HIGHLIGHT_COLOR = new Color(243, 242, 247);
+	private static final Color TILE_DISABLED_SHADOW_COLOR = new Color(175, 174, 212);
+	private static final Color TILE_BORDER_COLOR = new Color(122, 120, 190);
+	private static final Tile[] TILES = Tile.values();
+
+	private final int tileSize;
+	private final double scale;
+	private final Font font;
+	private final BufferedImage[] enabled = new BufferedImage[TILES.length];		// indexed by tile ordinal
+	private final BufferedImage[] disabled = new BufferedImage[TILES.length];
+
+	/**
+	 * Render every tile.
+	 * @param config configuration of the screen the tiles will be drawn on, or null for a plain image
+	 * @param tileSize size of a tile in user space
+	 * @param scale device pixels per user space unit
+	 * @param font font for the tile text
+	 */
+	TileSprites(GraphicsConfiguration config, int tileSize, double scale, Font font){
+		this.tileSize = tileSize;
+		this.scale = scale;
+		this.font = font;
+		int pixels = (int)Math.ceil(tileSize*scale);
+		for( Tile tile : TILES ){
+			enabled[tile.ordinal()] = render(config, pixels, tile, true);
+			disabled[tile.ordinal()] = render(config, pixels, tile, false);
+		}
+	}
+
+	/**
+	 * True if these sprites can be used to draw tiles of the given size, scale and font.
+	 */
+	boolean matches(int tileSize, double scale, Font font){
+		return this.tileSize == tileSize && this.scale == scale && this.font.equals(font);
+	}
+
+	/**
+	 * Draw a tile with its top left corner at (x, y).
+	 */
+	void draw(Graphics2D g2, Tile tile, boolean isEnabled, int x, int y){
+		g2.drawImage((isEnabled ? enabled : disabled)[tile.ordinal()], x, y, tileSize, tileSize, null);
+	}
+
+	private BufferedImage render(GraphicsConfiguration config, int pixels, Tile tile, boolean isEnabled){
+		BufferedImage image = (config != null) ? config.createCompatibleImage(pixels, pixels, Transparency.OPAQUE)
+				: new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = image.createGraphics();
+		g2.scale(scale, scale);
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		paintTile(g2, tile, isEnabled, 0, 0, tileSize, font);
+		g2.dispose();
+		return image;
+	}
+
+	/**
+	 * Paint a tile directly: a vertical gradient, darker when the tile can still be clicked, with the tile's text centred.
+	 */
+	static void paintTile(Graphics2D g2, Tile tile, boolean isEnabled, int x, int y, int tileSize, Font font){
+		if( isEnabled ){
+			g2.setPaint(new GradientPaint(0, y, TILE_ENABLED_HIGHLIGHT_COLOR, 0, y + tileSize, TILE_ENABLED_SHADOW_COLOR));
+		} else {
+			g2.setPaint(new GradientPaint(0, y, TILE_DISABLED_HIGHLIGHT_COLOR, 0, y + tileSize, TILE_DISABLED_SHADOW_COLOR));
+		}
+		g2.fillRect(x, y, tileSize, tileSize);
+		g2.setColor(TILE_BORDER_COLOR);
+		g2.drawRect(x, y, tileSize - 1, tileSize - 1);
+
+		String text = tile.toString();
+		FontMetrics metrics = g2.getFontMetrics(font);
+		g2.setColor(isEnabled ? UIManager.getColor("Button.foreground") : UIManager.getColor("Button.disabledText"));
+		g2.setFont(font);
+		g2.drawString(text, x + (tileSize - metrics.stringWidth(text))/2, y + (tileSize - metrics.getHeight())/2 + metrics.getAscent());
+	}
+
+	/**
+	 * Device pixels per user space unit for g2, taken from its transform.
+	 */
+	static double scaleOf(Graphics2D g2){
+		AffineTransform transform = g2.getTransform();
+		return Math.max(Math.abs(transform.getScaleX()), Math.abs(transform.getScaleY()));
+	}
+}
@@ -1,5 +1,8 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.*;
 
@@ -8,89 +11,91 @@ import javax.swing.*;
  * @author Rachel Wiens
  *
  * TODO:
- *  - Add scoreboard
+ *  - Add scoreboard (games are recorded in the Hall of Fame, but only the best time is shown)
  *  - Add file toolbar option to change difficulty
- *  - Add ability to press keys (F for flag, some other key for reveal) to reveal/flag a tile which has mouse focus (Because playing minesweeper with a trackpad sucks.)
  */
 public class UIView extends JFrame implements ActionListener{
 		
 	private static Minesweeper game;
 	private JPanel pane = new JPanel(new BorderLayout(boardHeight, boardLength));
-	private JPanel boardPane = new JPanel(new GridLayout(boardHeight+1, boardLength));
 	private static int boardLength;
 	private static int boardHeight;
 	private static JLabel timeLbl = new JLabel("00:00:00");
 	private static CountingTimer timer;
 	private static JLabel infoLbl = new JLabel("Welcome to Minesweeper!");
 	private static JButton newGameButton = new JButton("Start Game");
-	private static JButton buttons[][];
+	private static BoardCanvas boardCanvas;
+	private static int hoverRow = -1;		// tile under the mouse, for keyboard moves
+	private static int hoverCol = -1;
+	private static HallOfFame hallOfFame;
+	private static boolean dealing;		// a no-guess first move is being made in the background, so input is ignored
 	
 	/**
-	 * Mouse listener for board tile mouse clicks
+	 * Mouse listener for board tile mouse clicks.
+	 * The clicked tile is worked out from the mouse position, and the tile under the mouse is remembered for the key listener.
 	 */
-	private static MouseListener mouseListener = new MouseAdapter() {
+	private static MouseAdapter mouseListener = new MouseAdapter() {
 		public void mousePressed(MouseEvent event){
-	    	JButton btn = (JButton)event.getSource();	    
-	    	  
-	    	// Find the button that was clicked.
-		    for( int y=0; y<boardHeight; y++){
-			   	for( int x=0; x<boardLength; x++){
-			   		if( btn.equals(buttons[y][x]) ){
-			   			if( !timer.isRunning()){		// If first click of the game
-			   				newGameButton.setText("New Game");
-			   				infoLbl.setText(Integer.toString(game.getMinesLeft()));
-			   				timer.start();
-			   			}
-			   			if( SwingUtilities.isLeftMouseButton(event) && ! game.makeMove(y,x) ){ // Left click so reveal tile. If game over, update the board appropriately.  	
-				   			gameOver();
-			   			}else if( SwingUtilities.isRightMouseButton(event)){	// Right click to flag a mine.
-			   				game.flag(y, x);
-							infoLbl.setText(Integer.toString(game.getMinesLeft()));
-			   			}
-			   			showTile(y,x);
-			   			return;	// Only one button will be clicked at a time, so skip the rest and return.
-			   		} // if btn
-			   	} // for x
-		    } // for y
+			int y = boardCanvas.rowAt(event.getY());
+			int x = boardCanvas.colAt(event.getX());
+			if( y<0 || x<0 || boardCanvas.isGameOver() || dealing ) return;
+			boardCanvas.requestFocusInWindow();
+			if( SwingUtilities.isLeftMouseButton(event) && game.getNoGuess() != null && game.isFirstMove() ){
+				dealFirstMove(y, x);
+				return;
+			}
+			
+			startTimer();
+			boolean gameContinues = true;
+			if( SwingUtilities.isLeftMouseButton(event) ){ // Left click so reveal tile.
+				gameContinues = game.makeMove(y,x);
+			}else if( SwingUtilities.isRightMouseButton(event)){	// Right click to flag a mine.
+				game.flag(y, x);
+				infoLbl.setText(Integer.toString(game.getMinesLeft()));
+			}
+			showMove();
+			if( !gameContinues ) gameOver();	// If game over, update the board appropriately.
+		}
+		
+		public void mouseMoved(MouseEvent event){
+			hoverRow = boardCanvas.rowAt(event.getY());
+			hoverCol = boardCanvas.colAt(event.getX());
+		}
+		
+		public void mouseExited(MouseEvent event){
+			hoverRow = hoverCol = -1;
 		}
-	      
 	};
 	
 	/**
 	 * Key listener for keyboard input.
-	 * Keys: F		 		  flag the tile that has mouse focus
+	 * Keys: F		 		  flag the tile under the mouse
 	 *       Enter			  start a new game
-	 *       Anything else	  Reveal the tile that has mouse focus
+	 *       Anything else	  Reveal the tile under the mouse
 	 */
 	private static KeyListener keyListener = new KeyAdapter() {
-		public void keyTyped(KeyEvent event){
-			// TODO: Figure out where to add key listener so this actually works.
-			System.out.println("Key pressed: "+ event.getKeyChar());
-
-			for( int y=0; y<boardHeight; y++){
-				for( int x=0; x<boardLength; x++){
-					if( buttons[y][x].isFocusOwner() ){ // Find the button under focus when the key is pressed.
-						
-						if( !timer.isRunning()){		// If first click of the game
-			   				newGameButton.setText("New Game");
-			   				infoLbl.setText(Integer.toString(game.getMinesLeft()));
-			   				timer.start();
-			   			}
-						
-						if( event.getKeyCode() == KeyEvent.VK_F) { // 'F' key, so flag the mine.
-							game.flag(y, x);
-							infoLbl.setText(Integer.toString(game.getMinesLeft()));
-						} else if( event.getKeyCode() == KeyEvent.VK_ENTER ) { // Enter key, so restart the game.
-							newGame();
-						} else if( ! game.makeMove(y,x) ) {  // For any other key, reveal the mine. If game over, update the board accordingly.
-					   		gameOver();
-						}
-						showTile(y,x);
-						return; // Only one button should be in focus at a time, so skip the rest and return.
-					} // if button focus
-				} // for x
-			} // for y
-
+		public void keyPressed(KeyEvent event){
+			if( dealing ) return;
+			if( event.getKeyCode() == KeyEvent.VK_ENTER ) { // Enter key, so restart the game.
+				newGame();
+				return;
+			}
+			if( hoverRow<0 || hoverCol<0 || boardCanvas.isGameOver() || event.isActionKey() || event.getKeyChar() == KeyEvent.CHAR_UNDEFINED ) return;
+			if( event.getKeyCode() != KeyEvent.VK_F && game.getNoGuess() != null && game.isFirstMove() ){
+				dealFirstMove(hoverRow, hoverCol);
+				return;
+			}
+			
+			startTimer();
+			if( event.getKeyCode() == KeyEvent.VK_F) { // 'F' key, so flag the mine.
+				game.flag(hoverRow, hoverCol);
+				infoLbl.setText(Integer.toString(game.getMinesLeft()));
+				showMove();
+			} else {  // For any other key, reveal the mine. If game over, update the board accordingly.
+				boolean gameContinues = game.makeMove(hoverRow, hoverCol);
+				showMove();
+				if( !gameContinues ) gameOver();
+			}
 		}
 	};
 	
@@ -115,17 +120,13 @@ public class UIView extends JFrame implements ActionListener{
 			}
 		});
 		
-		// add board buttons
-		buttons = new JButton[boardHeight][boardLength];
-		for( int i=0; i<boardHeight; i++){
-			for( int j=0; j<boardLength; j++){
-				buttons[i][j] = new BoardTileButton();
-				buttons[i][j].addMouseListener(mouseListener);
-				boardPane.add(buttons[i][j]);
-			}
-		}
+		// add the board, which paints all of its tiles itself
+		boardCanvas = new BoardCanvas(game);
+		boardCanvas.addMouseListener(mouseListener);
+		boardCanvas.addMouseMotionListener(mouseListener);
+		boardCanvas.addKeyListener(keyListener);
 		
-		pane.add(boardPane, BorderLayout.SOUTH);
+		pane.add(new JScrollPane(boardCanvas), BorderLayout.SOUTH);
 		Container container = this.getContentPane();
 		container.add(pane);
 		
@@ -135,12 +136,21 @@ public class UIView extends JFrame implements ActionListener{
 
 	/**
 	 * Sets up the UI and runs the game.
+	 * Arguments: [-noguess] to only deal boards that can be solved without guessing
 	 * @param args
 	 */
 	public static void main(String[] args){
 		game = new Minesweeper();
+		game.setBoardPool(new BoardPool());
+		if( args.length > 0 && args[0].equals("-noguess") ) game.setNoGuess(new NoGuessGenerator());
 		boardLength = game.getBoardLength();
 		boardHeight = game.getBoardHeight();
+		try {
+			hallOfFame = new HallOfFame(Paths.get(System.getProperty("user.home"), ".minesweeper-hall-of-fame"), 10, 1);
+		} catch (IOException e) {
+			System.err.println("Could not open the Hall of Fame, so scores will not be saved: " + e.getMessage());
+			hallOfFame = new HallOfFame(10);
+		}
 		JFrame view = new UIView();
 	}
 	
@@ -151,83 +161,103 @@ public class UIView extends JFrame implements ActionListener{
 	private static void newGame() {
 		timer.stop();
 		game.newGame();
-		updateBoard();
+		boardCanvas.setGameOver(false);		// repaints the whole board
 		newGameButton.setText("Start Game");
 		timeLbl.setText(String.valueOf(timer.getTimeSinceStart()));		
 	}
 	
-	/** 
-	 * Called whenever any non-tile button is clicked.
+	/**
+	 * Make the first move of a no-guess game on a SwingWorker, since finding a board that needs no guessing can take a
+	 * while, and show it once it is done. Input is ignored until then, and the timer starts when the board is shown.
+	 * The move is made on a copy of the game, with its flags, so the board being painted is never changed off the event
+	 * dispatch thread; the copy replaces the game once it is done.
+	 * @param row
+	 * @param col
 	 */
-	public void actionPerformed(ActionEvent event){	
-		JButton btn = (JButton)event.getSource();
-		if( btn.equals(newGameButton) ){
-			newGame();			
+	private static void dealFirstMove(final int row, final int col){
+		dealing = true;
+		newGameButton.setEnabled(false);
+		infoLbl.setText("Dealing a board that needs no guessing...");
+		final Minesweeper dealt = new Minesweeper(boardLength, boardHeight, game.getNumMines(), game.getSeed());
+		dealt.setNoGuess(game.getNoGuess());
+		dealt.setBoardPool(game.getBoardPool());
+		for( int i=0; i<boardHeight; i++){
+			for( int j=0; j<boardLength; j++){
+				if( game.getTile(i, j) == Tile.FLAGGED ) dealt.flag(i, j);
+			}
 		}
+		new SwingWorker<Boolean, Void>(){
+			protected Boolean doInBackground(){
+				return dealt.makeMove(row, col);
+			}
+			
+			protected void done(){
+				dealing = false;
+				newGameButton.setEnabled(true);
+				boolean gameContinues;
+				try {
+					gameContinues = get();
+				} catch (InterruptedException | ExecutionException e) {
+					throw new IllegalStateException("Could not deal a board", e);
+				}
+				game = dealt;
+				boardCanvas.setGame(dealt);
+				startTimer();
+				infoLbl.setText(Integer.toString(game.getMinesLeft()));
+				showMove();
+				if( !gameContinues ) gameOver();
+			}
+		}.execute();
 	}
 	
 	/**
-	 * Show the value of a tile at position (x,y). If it's empty, display the value of all tiles around it as well.
+	 * Start the timer if this is the first move of the game.
 	 */
-	private static void showTile(int x, int y){
-		if( x<0 || y<0 || x>=boardLength || y>=boardHeight ) return;
-		JButton btn = buttons[x][y];
-		if( !btn.isEnabled() ) return;
-		Tile val = game.getBoard()[x][y];
-		btn.setText( val.toString() );
-		if( val != Tile.FLAGGED && val != Tile.UNKNOWN ){
-			btn.setEnabled(false);
+	private static void startTimer(){
+		if( !timer.isRunning()){
+			newGameButton.setText("New Game");
+			infoLbl.setText(Integer.toString(game.getMinesLeft()));
+			timer.start();
 		}
-		// if tile is empty, show all tiles around it.
-		if( val==Tile.EMPTY){
-			for( int i=-1; i<2; i++ ){
-				for( int j=-1; j<2; j++ ){
-					showTile(x+i, y+j);
-				}
-			}
+	}
+	
+	/** 
+	 * Called whenever any non-tile button is clicked.
+	 */
+	public void actionPerformed(ActionEvent event){	
+		JButton btn = (JButton)event.getSource();
+		if( btn.equals(newGameButton) ){
+			newGame();			
 		}
 	}
 	
 	/**
-	 * Update all the View to match the Model's board
+	 * Show the tiles changed by the last move. Only the area around those tiles is repainted, so this costs the number of changed tiles, not the size of the board.
 	 */
-	private static void updateBoard(){
-		Tile[][] board = game.getBoard();
-		
-		for( int y=0; y<boardHeight; y++){
-			for( int x=0; x<boardLength; x++){
-				Tile val = board[y][x];
-				buttons[y][x].setText( val.toString() );	// button displays the board tile's value
-				if( val==Tile.UNKNOWN || val==Tile.FLAGGED ){
-					buttons[y][x].setEnabled(true);		// unknown or flagged buttons are clickable
-				} else {
-					buttons[y][x].setEnabled(false);	// all other buttons are unclickable (since their value is already known)
-				}
-				
-			}
-		}
+	private static void showMove(){
+		boardCanvas.repaintMove(game.getLastMove());
 	}
 	
 	/**
 	 * The game is over. Print out the win/lose message.
 	 */
 	private static void gameOver(){
+		int time = (int)timer.getMillisSinceStart();
 		timer.stop();
+		try {
+			hallOfFame.addGame(game, game.isGameWon(), time);
+		} catch (IOException e) {
+			System.err.println("Could not save the game to the Hall of Fame: " + e.getMessage());
+		}
 		if(game.isGameWon()){
-			infoLbl.setText("Congratulations! You won the game.");
+			int best = hallOfFame.getBestTime(game.getBoardLength(), game.getBoardHeight(), game.getNumMines());
+			infoLbl.setText(String.format("Congratulations! You won the game. Best time: %.1fs", best/1000.0));
 		} else {
 			infoLbl.setText("Oops! Sorry, you lose.");
 		}
 		
-		// disable all board tile buttons
-		Tile[][] board = game.getBoard();
-		for( int y=0; y<boardHeight; y++){
-			for( int x=0; x<boardLength; x++){
-				Tile val = board[y][x];
-				buttons[y][x].setText( val.toString() );	// button displays the board tile's value
-				buttons[y][x].setEnabled(false);	// all other buttons are unclickable (since their value is already known)	
-			}
-		}
+		// disable all board tiles
+		boardCanvas.setGameOver(true);
 	}
 
 }
@@ -0,0 +1,79 @@
+/**
+ * Compares the heap used by the old board layout (Tile[][] plus a boolean[][] minefield)
+ * with the packed Board (4 bits per tile plus a mine bitset).
+ * Run with a large heap, e.g. java -Xmx8g BoardMemoryBenchmark
+ * @author Rachel Wiens
+ */
+public class BoardMemoryBenchmark {
+
+	private static final int[][] SIZES = {
+		{10, 10},			// beginner
+		{25, 25},			// intermediate
+		{100, 100},			// expert
+		{1000, 1000},
+		{5000, 5000},
+		{20000, 20000},
+	};
+
+	public static void main(String[] args){
+		System.out.printf("%-12s %16s %16s %8s%n", "size", "old (bytes)", "packed (bytes)", "ratio");
+		for( int[] size : SIZES ){
+			int height = size[0];
+			int length = size[1];
+			long oldBytes = measureOldLayout(height, length);
+			long newBytes = measurePackedBoard(height, length);
+			String ratio = (oldBytes > 0 && newBytes > 0) ? String.format("%.1fx", (double)oldBytes/newBytes) : "-";
+			System.out.printf("%-12s %16s %16s %8s%n", height+"x"+length, format(oldBytes), format(newBytes), ratio);
+		}
+	}
+
+	/**
+	 * Heap used by a Tile[][] board and boolean[][] minefield, or -1 if they do not fit.
+	 */
+	private static long measureOldLayout(int height, int length){
+		long before = usedMemory();
+		try {
+			Tile[][] board = new Tile[height][length];
+			boolean[][] minefield = new boolean[height][length];
+			for( int i=0; i<height; i++){
+				java.util.Arrays.fill(board[i], Tile.UNKNOWN);
+			}
+			long used = usedMemory() - before;
+			keepAlive(board, minefield);
+			return used;
+		} catch (OutOfMemoryError e){
+			return -1;
+		}
+	}
+
+	/**
+	 * Heap used by a packed Board, or -1 if it does not fit.
+	 */
+	private static long measurePackedBoard(int height, int length){
+		long before = usedMemory();
+		try {
+			Board board = new Board(height, length, 0);
+			long used = usedMemory() - before;
+			keepAlive(board, null);
+			return used;
+		} catch (OutOfMemoryError e){
+			return -1;
+		}
+	}
+
+	private static long usedMemory(){
+		Runtime runtime = Runtime.getRuntime();
+		for( int i=0; i<3; i++ ) System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static int sink;
+
+	private static void keepAlive(Object a, Object b){
+		sink += System.identityHashCode(a) ^ System.identityHashCode(b);
+	}
+
+	private static String format(long bytes){
+		return bytes < 0 ? "OOM" : String.format("%,d", bytes);
+	}
+}
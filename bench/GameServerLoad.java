@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Load generator for GameServer. Opens idle sessions that never move, then runs client threads that each play random
+ * moves on their own session as fast as the server answers, and reports moves per second and move latency percentiles.
+ * Run with java GameServerLoad [port] [idle sessions] [clients] [seconds]. With port 0, or no arguments, a 10x10
+ * server is started in the same JVM (which then needs file descriptors for both ends of every connection).
+ * @author Rachel Wiens
+ */
+public class GameServerLoad {
+	private static final byte[] PROMPT = ("Move: " + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		int idle = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int clients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		GameServer server = null;
+		if( port == 0 ){
+			server = new GameServer(0, 10, 10, 20);
+			port = server.getPort();
+		}
+		InetAddress host = InetAddress.getLoopbackAddress();
+
+		List<Socket> idleSockets = new ArrayList<Socket>();
+		long start = System.nanoTime();
+		for( int s=0; s<idle; s++) idleSockets.add(new Socket(host, port));
+		System.out.printf("opened %d idle sessions in %.0f ms%n", idle, (System.nanoTime() - start)/1e6);
+
+		final int serverPort = port;
+		final long end = System.nanoTime() + seconds*1000000000L;
+		final long[][] latencies = new long[clients][];
+		final int[] counts = new int[clients];
+		Thread[] threads = new Thread[clients];
+		for( int c=0; c<clients; c++){
+			final int client = c;
+			threads[c] = new Thread(() -> {
+				long[] nanos = new long[1 << 16];
+				int count = 0;
+				SplittableRandom random = new SplittableRandom(client);
+				byte[] buffer = new byte[8192];
+				try( Socket socket = new Socket(host, serverPort) ){
+					socket.setTcpNoDelay(true);
+					InputStream in = socket.getInputStream();
+					OutputStream out = socket.getOutputStream();
+					readUntilPrompt(in, buffer);
+					while( System.nanoTime() < end ){
+						byte[] move = ((1 + random.nextInt(10)) + " " + (1 + random.nextInt(10)) + "\n").getBytes(StandardCharsets.US_ASCII);
+						long sent = System.nanoTime();
+						out.write(move);
+						readUntilPrompt(in, buffer);
+						if( count == nanos.length ) nanos = Arrays.copyOf(nanos, count*2);
+						nanos[count++] = System.nanoTime() - sent;
+					}
+				} catch (IOException e) {
+					System.err.println("client " + client + ": " + e.getMessage());
+				}
+				latencies[client] = nanos;
+				counts[client] = count;
+			});
+			threads[c].start();
+		}
+		for( Thread thread : threads ) thread.join();
+
+		int total = 0;
+		for( int count : counts ) total += count;
+		long[] all = new long[total];
+		int position = 0;
+		for( int c=0; c<clients; c++){
+			System.arraycopy(latencies[c], 0, all, position, counts[c]);
+			position += counts[c];
+		}
+		Arrays.sort(all);
+		System.out.printf("%d clients: %d moves, %,.0f moves/s, latency p50 %.3f ms, p99 %.3f ms, max %.3f ms%n", clients, total, total/(double)seconds,
+				percentile(all, 50)/1e6, percentile(all, 99)/1e6, percentile(all, 100)/1e6);
+		if( server != null ) System.out.printf("server: %d active sessions, %d moves in finished games%n", server.getActiveSessions(), server.getMovesMade());
+
+		for( Socket socket : idleSockets ) socket.close();
+		if( server != null ) server.close();
+	}
+
+	/**
+	 * Read the server's answer up to and including the next "Move: " prompt.
+	 */
+	private static void readUntilPrompt(InputStream in, byte[] buffer) throws IOException {
+		int size = 0;
+		while( true ){
+			int read = in.read(buffer, size, buffer.length - size);
+			if( read < 0 ) throw new IOException("Server closed the connection");
+			size += read;
+			if( endsWith(buffer, size, PROMPT) ) return;
+			if( size > buffer.length - 256 ){		// keep only the end, which is where the prompt will be
+				System.arraycopy(buffer, size - PROMPT.length, buffer, 0, PROMPT.length);
+				size = PROMPT.length;
+			}
+		}
+	}
+
+	private static boolean endsWith(byte[] buffer, int size, byte[] suffix){
+		if( size < suffix.length ) return false;
+		for( int k=0; k<suffix.length; k++){
+			if( buffer[size - suffix.length + k] != suffix[k] ) return false;
+		}
+		return true;
+	}
+
+	private static long percentile(long[] sorted, double p){
+		if( sorted.length == 0 ) return 0;
+		int rank = (int)Math.ceil(p/100*sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(rank, sorted.length-1))];
+	}
+}
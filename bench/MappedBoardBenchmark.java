@@ -0,0 +1,63 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Plays random moves on a Minesweeper kept in a file by Minesweeper.open, and reports how long placing the mines, the
+ * moves and reopening the file took, and how much heap was used, which should depend on the tiles the moves changed
+ * rather than on the size of the board.
+ * Arguments: [length height mines [moves [file]]]
+ * The file needs about 10 bits per tile of disk (about 2 GB for the default 1.6 billion tiles), and is deleted afterwards.
+ * @author Rachel Wiens
+ */
+public class MappedBoardBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int length = args.length > 2 ? Integer.parseInt(args[0]) : 40000;
+		int height = args.length > 2 ? Integer.parseInt(args[1]) : 40000;
+		int mines = args.length > 2 ? Integer.parseInt(args[2]) : (int)((long)length*height/5);
+		int moves = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+		Path file = args.length > 4 ? Paths.get(args[4]) : Files.createTempFile("minesweeper", ".board");
+		System.out.printf("%dx%d board (%,d tiles) with %,d mines%n", length, height, (long)length*height, mines);
+
+		long heapBefore = usedMemory();
+		try {
+			Minesweeper game = Minesweeper.open(file, length, height, mines, 42L);
+			SplittableRandom random = new SplittableRandom(1);
+			long start = System.nanoTime();
+			game.makeMove(height - 1, length - 1);		// places the mines
+			System.out.printf("first move (placing the mines): %.1f s, revealed %,d%n", (System.nanoTime() - start)/1e9, game.getLastMove().size());
+
+			long revealed = 0;
+			int played = 0;
+			start = System.nanoTime();
+			while( played < moves ){
+				int i = random.nextInt(height);
+				int j = random.nextInt(length);
+				if( game.getTile(i, j) != Tile.UNKNOWN ) continue;
+				played++;
+				game.makeMove(i, j);		// a mine does not stop the benchmark
+				revealed += game.getLastMove().size();
+			}
+			long nanos = System.nanoTime() - start;
+			System.out.printf("%,d moves revealed %,d tiles: %.0f moves/s, %.0f ns/tile%n", played, revealed, played/(nanos/1e9), (double)nanos/Math.max(1, revealed));
+			start = System.nanoTime();
+			game.force();
+			System.out.printf("force: %.1f s%n", (System.nanoTime() - start)/1e9);
+			System.out.printf("file %,d bytes, heap used %,d bytes%n", Files.size(file), usedMemory() - heapBefore);
+
+			start = System.nanoTime();
+			Minesweeper reopened = Minesweeper.open(file, length, height, mines, 42L);
+			System.out.printf("reopened in %.3f s, %,d mines left%n", (System.nanoTime() - start)/1e9, reopened.getMinesLeft());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static long usedMemory(){
+		Runtime runtime = Runtime.getRuntime();
+		for( int i=0; i<3; i++ ) System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,58 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how ProbabilityEngine scales with the number of cores.
+ * Each position is a board that Solver has played from the centre until it got stuck, so the frontier is what a
+ * player would face when they have to guess.
+ * Run with e.g. java -Xmx2g ProbabilityBenchmark
+ * @author Rachel Wiens
+ */
+public class ProbabilityBenchmark {
+
+	private static final int LENGTH = 300;
+	private static final int HEIGHT = 300;
+	private static final int MINES = 15000;
+	private static final int POSITIONS = 20;
+	private static final int ROUNDS = 3;
+	private static final long SEED = 42L;
+
+	public static void main(String[] args){
+		Minesweeper[] positions = new Minesweeper[POSITIONS];
+		Minesweeper game = new Minesweeper(LENGTH, HEIGHT, MINES, SEED);
+		for( int p=0; p<POSITIONS; ){
+			game.newGame();
+			if( !game.makeMove(HEIGHT/2, LENGTH/2) ) continue;
+			Solver solver = new Solver(game);
+			if( solver.solve() || solver.isGameOver() ) continue;
+			positions[p++] = new Minesweeper(LENGTH, HEIGHT, MINES, game.getSeed());
+		}
+		// replay each position's game: the same seed and first move give the same board, and the solver is deterministic
+		for( Minesweeper position : positions ){
+			position.makeMove(HEIGHT/2, LENGTH/2);
+			new Solver(position).solve();
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("%d positions on %dx%d with %d mines%n", POSITIONS, LENGTH, HEIGHT, MINES);
+		System.out.printf("%8s %14s %10s %12s%n", "threads", "ms/position", "speedup", "components");
+		double single = 0;
+		for( int threads=1; threads<=cores; threads = (threads == cores) ? cores+1 : Math.min(threads*2, cores)){
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			ProbabilityEngine engine = new ProbabilityEngine(pool, 1L << 24, 2000);
+			double best = Double.MAX_VALUE;
+			int components = 0;
+			for( int round=0; round<ROUNDS; round++){		// the first round doubles as warmup; keep the best
+				components = 0;
+				long start = System.nanoTime();
+				for( Minesweeper position : positions ){
+					engine.computeProbabilities(position);
+					components += engine.getComponents();
+				}
+				best = Math.min(best, (System.nanoTime()-start)/1e6/POSITIONS);
+			}
+			pool.shutdown();
+			if( threads == 1 ) single = best;
+			System.out.printf("%8d %14.2f %9.2fx %12d%n", threads, best, single/best, components/POSITIONS);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Records games played by SolverMoveStrategy with GameRecorder, then measures how fast GameReplay replays them,
+ * in moves per second, and the size of the recording in bytes per move.
+ * Run with java ReplayBenchmark
+ * @author Rachel Wiens
+ */
+public class ReplayBenchmark {
+
+	private static final int[][] SIZES = {		// length, height, mines, games
+		{10, 10, 20, 100000},		// beginner
+		{25, 25, 125, 20000},		// intermediate
+		{100, 100, 300, 1000},		// expert
+	};
+	private static final int ROUNDS = 5;
+	private static final long SEED = 42L;
+
+	public static void main(String[] args) throws IOException {
+		System.out.printf("%-12s %8s %10s %11s %16s%n", "size", "games", "moves", "bytes/move", "moves/s");
+		for( int[] size : SIZES ){
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			GameRecorder recorder = new GameRecorder(bytes);
+			Minesweeper game = new Minesweeper(size[0], size[1], size[2], SEED);
+			game.setRecorder(recorder);
+			SolverMoveStrategy strategy = new SolverMoveStrategy();
+			SplittableRandom random = new SplittableRandom(SEED);
+			for( int g=0; g<size[3]; g++){
+				game.newGame();
+				strategy.play(game, random);
+			}
+			recorder.close();
+			byte[] recording = bytes.toByteArray();
+
+			double best = 0;
+			long moves = 0;
+			for( int round=0; round<ROUNDS; round++){		// the first rounds double as warmup; keep the best
+				GameReplay replay = new GameReplay(new ByteArrayInputStream(recording));
+				long start = System.nanoTime();
+				replay.replayAll(null);
+				best = Math.max(best, replay.getMoves()*1e9/(System.nanoTime() - start));
+				moves = replay.getMoves();
+			}
+			System.out.printf("%-12s %8d %10d %11.2f %,16.0f%n", size[0]+"x"+size[1], size[3], moves, (double)recording.length/moves, best);
+		}
+	}
+}
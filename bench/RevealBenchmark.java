@@ -0,0 +1,94 @@
+import java.util.Random;
+
+/**
+ * Measures reveal throughput with the precomputed neighbour counts in Board against
+ * recounting each tile's 3x3 neighbourhood with bounds checks, the way revealTile used to.
+ * Also times a full-board flood fill through Minesweeper.makeMove.
+ * Run with e.g. java -Xmx4g RevealBenchmark
+ * @author Rachel Wiens
+ */
+public class RevealBenchmark {
+
+	private static final int[][] SIZES = {		// height, length, mines
+		{100, 100, 300},		// expert
+		{1000, 1000, 30000},
+		{4000, 4000, 480000},
+	};
+	private static final int ROUNDS = 5;
+	private static final long SEED = 42L;
+
+	public static void main(String[] args){
+		System.out.printf("%-12s %18s %18s %18s%n", "size", "recount (tiles/s)", "lookup (tiles/s)", "flood fill (tiles/s)");
+		for( int[] size : SIZES ){
+			Board board = randomBoard(size[0], size[1], size[2]);
+			long cells = (long)size[0]*size[1];
+			double recount = 0, lookup = 0;
+			for( int round=0; round<ROUNDS; round++){		// the first rounds double as warmup; keep the best
+				long start = System.nanoTime();
+				sink += recountAll(board);
+				recount = Math.max(recount, cells*1e9/(System.nanoTime()-start));
+				start = System.nanoTime();
+				sink += lookupAll(board);
+				lookup = Math.max(lookup, cells*1e9/(System.nanoTime()-start));
+			}
+			System.out.printf("%-12s %,18.0f %,18.0f %,18.0f%n", size[0]+"x"+size[1], recount, lookup, floodFill(size[0], size[1]));
+		}
+		if( sink == 42 ) System.out.println();		// keep the results alive
+	}
+
+	private static long sink;
+
+	private static Board randomBoard(int height, int length, int mines){
+		Board board = new Board(height, length, mines);
+		Random random = new Random(SEED);
+		for( int m=0; m<mines; m++){
+			board.setMine(random.nextInt(height*length));
+		}
+		return board;
+	}
+
+	/**
+	 * Count bordering mines for every tile by checking its neighbours.
+	 */
+	private static long recountAll(Board board){
+		int height = board.getHeight();
+		int length = board.getLength();
+		long total = 0;
+		for( int i=0; i<height; i++){
+			for( int j=0; j<length; j++){
+				for( int k=-1; k<2; k++){
+					for( int l=-1; l<2; l++){
+						if( (i+k >= 0) && (i+k < height) && (j+l >= 0) && (j+l < length) && board.isMine(i+k, j+l) ) total++;
+					}
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Read bordering mines for every tile from the precomputed counts.
+	 */
+	private static long lookupAll(Board board){
+		int cells = board.getHeight()*board.getLength();
+		long total = 0;
+		for( int index=0; index<cells; index++){
+			total += board.getNeighbourMines(index);
+		}
+		return total;
+	}
+
+	/**
+	 * Tiles per second revealed by a single click on a board with no mines, which opens every tile.
+	 */
+	private static double floodFill(int height, int length){
+		double best = 0;
+		for( int round=0; round<ROUNDS; round++){
+			Minesweeper game = new Minesweeper(length, height, 0);
+			long start = System.nanoTime();
+			game.makeMove(height/2, length/2);
+			best = Math.max(best, (double)height*length*1e9/(System.nanoTime()-start));
+		}
+		return best;
+	}
+}
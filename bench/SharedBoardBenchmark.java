@@ -0,0 +1,66 @@
+import java.util.SplittableRandom;
+
+/**
+ * Measures moves per second on one shared board as the number of player threads grows, for ConcurrentMinesweeper
+ * against a Minesweeper behind a single lock. Every thread clicks random tiles across the whole board (and keeps going
+ * after mines, which both games allow), so threads mostly work in different regions but their flood fills do meet.
+ * Run with e.g. java -Xmx2g SharedBoardBenchmark [moves per run] [length height mines]
+ * @author Rachel Wiens
+ */
+public class SharedBoardBenchmark {
+
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+	private static final int ROUNDS = 3;
+	private static final long SEED = 42L;
+
+	public static void main(String[] args) throws InterruptedException {
+		int moves = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int length = args.length > 3 ? Integer.parseInt(args[1]) : 4000;
+		int height = args.length > 3 ? Integer.parseInt(args[2]) : 4000;
+		int mines = args.length > 3 ? Integer.parseInt(args[3]) : 2400000;
+		System.out.printf("%dx%d board, %d mines, %d random moves per run, %d cores%n", length, height, mines, moves, Runtime.getRuntime().availableProcessors());
+		System.out.printf("%8s %18s %18s%n", "threads", "concurrent mov/s", "locked mov/s");
+		for( int threads : THREADS ){
+			double concurrent = 0, locked = 0;
+			for( int round=0; round<ROUNDS; round++){		// the first round doubles as warmup; keep the best
+				ConcurrentMinesweeper shared = new ConcurrentMinesweeper(length, height, mines, SEED);
+				shared.makeMove(height/2, length/2);
+				concurrent = Math.max(concurrent, run(threads, moves, length*height, (row, col) -> shared.makeMove(row, col), length));
+
+				Minesweeper game = new Minesweeper(length, height, mines, SEED);
+				game.makeMove(height/2, length/2);
+				locked = Math.max(locked, run(threads, moves, length*height, (row, col) -> {
+					synchronized( game ){
+						game.makeMove(row, col);
+					}
+				}, length));
+			}
+			System.out.printf("%8d %,18.0f %,18.0f%n", threads, concurrent, locked);
+		}
+	}
+
+	private interface Move {
+		void make(int row, int col);
+	}
+
+	/**
+	 * Split moves random clicks between threads and return the moves per second.
+	 */
+	private static double run(int threads, int moves, final int cells, final Move move, final int length) throws InterruptedException {
+		Thread[] players = new Thread[threads];
+		for( int t=0; t<threads; t++){
+			final int playerMoves = moves/threads;
+			final SplittableRandom random = new SplittableRandom(SEED + t);
+			players[t] = new Thread(() -> {
+				for( int m=0; m<playerMoves; m++){
+					int index = random.nextInt(cells);
+					move.make(index / length, index % length);
+				}
+			});
+		}
+		long start = System.nanoTime();
+		for( Thread player : players ) player.start();
+		for( Thread player : players ) player.join();
+		return (double)(moves/threads*threads)*1e9/(System.nanoTime() - start);
+	}
+}
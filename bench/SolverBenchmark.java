@@ -0,0 +1,42 @@
+/**
+ * Measures how fast Solver works through boards of increasing size, in tiles revealed per second,
+ * and how many of the boards it solves without guessing.
+ * Run with e.g. java -Xmx2g SolverBenchmark
+ * @author Rachel Wiens
+ */
+public class SolverBenchmark {
+
+	private static final int[][] SIZES = {		// length, height, mines, games
+		{10, 10, 20, 20000},		// beginner
+		{25, 25, 125, 5000},		// intermediate
+		{100, 100, 300, 500},		// expert
+		{1000, 1000, 150000, 5},
+		{3000, 3000, 1350000, 2},
+	};
+	private static final long SEED = 42L;
+
+	public static void main(String[] args){
+		System.out.printf("%-12s %8s %8s %18s%n", "size", "games", "solved", "tiles/s");
+		for( int[] size : SIZES ){
+			Minesweeper game = new Minesweeper(size[0], size[1], size[2], SEED);
+			int games = size[3];
+			int solved = 0;
+			long tiles = 0;
+			long nanos = 0;
+			for( int g=0; g<games; g++){
+				game.newGame();
+				long start = System.nanoTime();
+				if( game.makeMove(size[1]/2, size[0]/2) ){
+					Solver solver = new Solver(game);
+					if( solver.solve() ) solved++;
+					tiles += solver.getTilesRevealed();
+				} else {
+					solved++;		// the first move opened the whole board
+				}
+				tiles += game.getLastMove().size();
+				nanos += System.nanoTime() - start;
+			}
+			System.out.printf("%-12s %8d %8d %,18.0f%n", size[0]+"x"+size[1], games, solved, tiles*1e9/nanos);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import javax.swing.UIManager;
+
+/**
+ * Measures the time to paint a screenful of tiles with the cached sprites used by BoardCanvas
+ * against painting every tile directly (a new gradient and a text layout per tile).
+ * Run with java -Djava.awt.headless=true TilePaintBenchmark
+ * @author Rachel Wiens
+ */
+public class TilePaintBenchmark {
+
+	private static final int TILE_SIZE = 50;
+	private static final int TILES = 20;		// a 20x20 tile viewport, the most BoardCanvas shows without scrolling
+	private static final int FRAMES = 200;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args){
+		Minesweeper game = new Minesweeper(100, 100, 300, 42L);
+		game.makeMove(50, 50);
+		Font font = UIManager.getFont("Button.font");
+		BufferedImage screen = new BufferedImage(TILES*TILE_SIZE, TILES*TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = screen.createGraphics();
+
+		double direct = Double.MAX_VALUE, cached = Double.MAX_VALUE;
+		for( int round=0; round<ROUNDS; round++){		// the first rounds double as warmup; keep the best
+			long start = System.nanoTime();
+			for( int frame=0; frame<FRAMES; frame++){
+				for( int row=0; row<TILES; row++){
+					for( int col=0; col<TILES; col++){
+						Tile tile = game.getTile(row+40, col+40);
+						TileSprites.paintTile(g2, tile, tile == Tile.UNKNOWN || tile == Tile.FLAGGED, col*TILE_SIZE, row*TILE_SIZE, TILE_SIZE, font);
+					}
+				}
+			}
+			direct = Math.min(direct, (System.nanoTime()-start)/1e6/FRAMES);
+
+			start = System.nanoTime();
+			TileSprites sprites = new TileSprites(null, TILE_SIZE, TileSprites.scaleOf(g2), font);		// included in the timing, as a resize would be
+			for( int frame=0; frame<FRAMES; frame++){
+				for( int row=0; row<TILES; row++){
+					for( int col=0; col<TILES; col++){
+						Tile tile = game.getTile(row+40, col+40);
+						sprites.draw(g2, tile, tile == Tile.UNKNOWN || tile == Tile.FLAGGED, col*TILE_SIZE, row*TILE_SIZE);
+					}
+				}
+			}
+			cached = Math.min(cached, (System.nanoTime()-start)/1e6/FRAMES);
+		}
+		g2.dispose();
+		System.out.printf("%dx%d tiles of %dpx per frame%n", TILES, TILES, TILE_SIZE);
+		System.out.printf("direct: %8.3f ms/frame%n", direct);
+		System.out.printf("cached: %8.3f ms/frame%n", cached);
+	}
+}
@@ -0,0 +1,102 @@
+import java.util.Arrays;
+
+import minesweeper.jmh.Engine;
+
+/**
+ * Default package bridge between the JMH benchmarks and the game. See Engine.
+ * @author Rachel Wiens
+ */
+public class JmhEngine implements Engine {
+	private Minesweeper game;
+
+	public void create(int length, int height, int mines, long seed){
+		game = new Minesweeper(length, height, mines, seed);
+	}
+
+	public void newGame(long seed){
+		game.newGame(seed);
+	}
+
+	public boolean makeMove(int row, int col){
+		return game.makeMove(row, col);
+	}
+
+	public void flag(int row, int col){
+		game.flag(row, col);
+	}
+
+	public boolean isGameWon(){
+		return game.isGameWon();
+	}
+
+	public int getBoardLength(){
+		return game.getBoardLength();
+	}
+
+	public int getBoardHeight(){
+		return game.getBoardHeight();
+	}
+
+	public int getLastRevealed(){
+		return game.getLastMove().size();
+	}
+
+	/**
+	 * A copy of the current game started at firstRow, firstCol with every tile revealed.
+	 */
+	private Minesweeper layout(int firstRow, int firstCol){
+		// the engine keeps accepting moves after a mine is hit, so revealing every tile of a copy shows the whole layout
+		Minesweeper copy = new Minesweeper(game.getBoardLength(), game.getBoardHeight(), game.getNumMines(), game.getSeed());
+		copy.makeMove(firstRow, firstCol);
+		for( int i=0; i<copy.getBoardHeight(); i++){
+			for( int j=0; j<copy.getBoardLength(); j++){
+				copy.makeMove(i, j);
+			}
+		}
+		return copy;
+	}
+
+	public int[] singleRevealTiles(int firstRow, int firstCol){
+		int length = game.getBoardLength();
+		int height = game.getBoardHeight();
+		Minesweeper copy = layout(firstRow, firstCol);
+		int[] tiles = new int[length*height];
+		int count = 0;
+		for( int i=0; i<height; i++){
+			for( int j=0; j<length; j++){
+				Tile tile = copy.getTile(i, j);
+				if( game.getTile(i, j) == Tile.UNKNOWN && tile != Tile.MINE && tile != Tile.EMPTY ) tiles[count++] = i*length + j;
+			}
+		}
+		return Arrays.copyOf(tiles, count);
+	}
+
+	public int openingSize(int firstRow, int firstCol){
+		int length = game.getBoardLength();
+		int height = game.getBoardHeight();
+		Minesweeper copy = layout(firstRow, firstCol);
+		boolean[] seen = new boolean[length*height];
+		int[] queue = new int[length*height];
+		queue[0] = firstRow*length + firstCol;
+		seen[queue[0]] = true;
+		int size = 1;
+		for( int next=0; next<size; next++){
+			int i = queue[next] / length;
+			int j = queue[next] % length;
+			if( copy.getTile(i, j) != Tile.EMPTY ) continue;
+			for( int k=Math.max(i-1, 0); k<=Math.min(i+1, height-1); k++){
+				for( int l=Math.max(j-1, 0); l<=Math.min(j+1, length-1); l++){
+					if( !seen[k*length + l] ){
+						seen[k*length + l] = true;
+						queue[size++] = k*length + l;
+					}
+				}
+			}
+		}
+		return size;
+	}
+
+	public byte[] render(){
+		return CommandLineView.drawBoard(game);
+	}
+}
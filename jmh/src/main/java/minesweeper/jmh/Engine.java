@@ -0,0 +1,59 @@
+package minesweeper.jmh;
+
+/**
+ * The game engine as seen by the benchmarks.
+ * JMH benchmarks cannot be in the default package, and classes outside it cannot refer to the game, so the benchmarks
+ * call the game through this interface. The only implementation, JmhEngine, is in the default package and is loaded
+ * by name. Calls are monomorphic, so the JIT inlines them.
+ * @author Rachel Wiens
+ */
+public interface Engine {
+
+	void create(int length, int height, int mines, long seed);
+
+	void newGame(long seed);
+
+	boolean makeMove(int row, int col);
+
+	void flag(int row, int col);
+
+	boolean isGameWon();
+
+	int getBoardLength();
+
+	int getBoardHeight();
+
+	/**
+	 * Number of tiles the last move revealed.
+	 */
+	int getLastRevealed();
+
+	/**
+	 * Flat indices (row*length + col) of the tiles that are still unknown and would reveal a single number, not a mine or
+	 * an empty tile, in the current game after its first move. Found by playing out a copy of the game.
+	 */
+	int[] singleRevealTiles(int firstRow, int firstCol);
+
+	/**
+	 * Number of tiles a first move at firstRow, firstCol reveals in a new game with the current game's seed: the tile and,
+	 * if it is empty, the opening around it. Found by searching the layout of a played out copy of the game, without the
+	 * engine's flood fill.
+	 */
+	int openingSize(int firstRow, int firstCol);
+
+	/**
+	 * Draw the whole board the way CommandLineView prints it.
+	 */
+	byte[] render();
+
+	/**
+	 * Load the default package implementation.
+	 */
+	static Engine load(){
+		try {
+			return (Engine)Class.forName("JmhEngine").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("JmhEngine is not on the class path", e);
+		}
+	}
+}
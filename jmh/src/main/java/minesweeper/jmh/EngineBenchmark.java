@@ -0,0 +1,181 @@
+package minesweeper.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the game engine's hot paths at each preset size. Every game uses Preset.SEED and is started from the
+ * centre tile, or for floodFill the first empty tile after it, so the boards, and the work done on them, are the same on
+ * every run.
+ * Build with mvn package in the jmh directory, then run java -jar target/benchmarks.jar
+ * (add e.g. -p preset=EXPERT to run one size).
+ * @author Rachel Wiens
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+	/**
+	 * An engine with a new game on the preset board.
+	 */
+	@State(Scope.Thread)
+	public static class NewGame {
+		@Param
+		public Preset preset;
+
+		Engine engine;
+		int row;
+		int col;
+
+		@Setup(Level.Trial)
+		public void create(){
+			engine = Engine.load();
+			engine.create(preset.length, preset.height, preset.mines, Preset.SEED);
+			row = preset.height/2;
+			col = preset.length/2;
+		}
+	}
+
+	/**
+	 * A game that has had its first move.
+	 */
+	@State(Scope.Thread)
+	public static class StartedGame extends NewGame {
+		int flagRow;
+		int flagCol;
+
+		@Setup(Level.Trial)
+		public void start(){
+			engine.makeMove(row, col);
+			int[] unknown = engine.singleRevealTiles(row, col);
+			if( unknown.length == 0 ) throw new IllegalStateException("the first move won the game");
+			flagRow = unknown[0] / preset.length;
+			flagCol = unknown[0] % preset.length;
+		}
+	}
+
+	/**
+	 * A game with a 1% mine density, and a first move near the centre on an empty tile, so it opens most of the board in
+	 * one flood fill. The first move is checked to reveal as many tiles as a search of the layout finds.
+	 */
+	@State(Scope.Thread)
+	public static class SparseGame {
+		@Param
+		public Preset preset;
+
+		Engine engine;
+		int row;
+		int col;
+
+		@Setup(Level.Trial)
+		public void create(){
+			engine = Engine.load();
+			engine.create(preset.length, preset.height, Math.max(1, preset.length*preset.height/100), Preset.SEED);
+			int tiles = preset.length*preset.height;
+			int centre = (preset.height/2)*preset.length + preset.length/2;
+			for( int k=0; k<tiles; k++){
+				int index = (centre + k) % tiles;
+				engine.newGame(Preset.SEED);
+				engine.makeMove(index / preset.length, index % preset.length);
+				if( engine.getLastRevealed() > 1 ){
+					row = index / preset.length;
+					col = index % preset.length;
+					int expected = engine.openingSize(row, col);
+					if( engine.getLastRevealed() != expected ){
+						throw new IllegalStateException("the flood fill revealed " + engine.getLastRevealed() + " tiles, expected " + expected);
+					}
+					return;
+				}
+			}
+			throw new IllegalStateException("no first move opens a flood fill");
+		}
+	}
+
+	/**
+	 * A started game and the tiles that each reveal a single number in it. Once they have all been revealed the
+	 * game is replayed from the same seed, which costs one first move every few hundred reveals.
+	 */
+	@State(Scope.Thread)
+	public static class Reveals extends NewGame {
+		int[] tiles;
+		int next;
+
+		@Setup(Level.Trial)
+		public void start(){
+			engine.makeMove(row, col);
+			tiles = engine.singleRevealTiles(row, col);
+		}
+
+		int nextTile(){
+			if( next == tiles.length ){
+				engine.newGame(Preset.SEED);
+				engine.makeMove(row, col);
+				next = 0;
+			}
+			return tiles[next++];
+		}
+	}
+
+	/**
+	 * Clear the board, place the mines with shuffleMines and make the first move's flood fill.
+	 */
+	@Benchmark
+	public boolean firstMove(NewGame state){
+		state.engine.newGame(Preset.SEED);
+		return state.engine.makeMove(state.row, state.col);
+	}
+
+	/**
+	 * First move on a sparse board, dominated by the flood fill.
+	 */
+	@Benchmark
+	public boolean floodFill(SparseGame state){
+		state.engine.newGame(Preset.SEED);
+		return state.engine.makeMove(state.row, state.col);
+	}
+
+	/**
+	 * Reveal one numbered tile.
+	 */
+	@Benchmark
+	public boolean reveal(Reveals state){
+		int index = state.nextTile();
+		return state.engine.makeMove(index / state.preset.length, index % state.preset.length);
+	}
+
+	@Benchmark
+	public boolean isGameWon(StartedGame state){
+		return state.engine.isGameWon();
+	}
+
+	/**
+	 * Flag or unflag the same unknown tile.
+	 */
+	@Benchmark
+	public void flag(StartedGame state){
+		state.engine.flag(state.flagRow, state.flagCol);
+	}
+
+	/**
+	 * Draw the whole board as CommandLineView does.
+	 */
+	@Benchmark
+	public byte[] render(StartedGame state){
+		return state.engine.render();
+	}
+}
@@ -0,0 +1,27 @@
+package minesweeper.jmh;
+
+/**
+ * Board sizes the benchmarks run at.
+ * @author Rachel Wiens
+ */
+public enum Preset {
+	BEGINNER(10, 10, 20),
+	INTERMEDIATE(25, 25, 125),
+	EXPERT(100, 100, 300),
+	HUGE(1000, 1000, 100000);
+
+	/**
+	 * Seed used for every game, so runs are comparable.
+	 */
+	public static final long SEED = 42L;
+
+	public final int length;
+	public final int height;
+	public final int mines;
+
+	Preset(int length, int height, int mines){
+		this.length = length;
+		this.height = height;
+		this.mines = mines;
+	}
+}
@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the save command only writes files when the view allows it, as the console's does and GameServer's do not.
+ * @author Rachel Wiens
+ */
+class CommandLineViewTest {
+
+	@TempDir
+	Path dir;
+
+	private static void play(Minesweeper game, String input, boolean saving) throws IOException {
+		CommandLineView view = new CommandLineView(game, new BufferedReader(new StringReader(input)), new ByteArrayOutputStream(), saving);
+		view.playGame();
+	}
+
+	@Test
+	void saveIsRefusedUnlessAllowed() throws IOException {
+		Path file = dir.resolve("game.sav");
+		play(new Minesweeper(10, 10, 20, 1), "1 1\nsave " + file + "\n", false);
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	void saveWritesTheGameWhenAllowed() throws IOException {
+		Path file = dir.resolve("game.sav");
+		Minesweeper game = new Minesweeper(10, 10, 20, 1);
+		play(game, "1 1\nsave " + file + "\n", true);
+		assertTrue(Files.exists(file));
+		Minesweeper loaded = Minesweeper.load(file);
+		for( int i=0; i<10; i++){
+			for( int j=0; j<10; j++){
+				assertEquals(game.getTile(i, j), loaded.getTile(i, j));
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the shared-board game: players revealing and flagging at once end up where one player would, and moves and
+ * flags outside the board are ignored.
+ * @author Rachel Wiens
+ */
+class ConcurrentMinesweeperTest {
+	private static final int LENGTH = 200;
+	private static final int HEIGHT = 150;
+	private static final int MINES = 4000;
+	private static final int PLAYERS = 4;
+
+	/**
+	 * Run each task on its own thread, all at once, and wait for them.
+	 */
+	private static void runTogether(List<Runnable> tasks) throws InterruptedException {
+		List<Thread> threads = new ArrayList<Thread>();
+		for( Runnable task : tasks ) threads.add(new Thread(task));
+		for( Thread thread : threads ) thread.start();
+		for( Thread thread : threads ) thread.join();
+	}
+
+	@Test
+	void playersClearingTheBoardTogetherWin() throws InterruptedException {
+		for( long seed=0; seed<5; seed++){
+			final ConcurrentMinesweeper game = new ConcurrentMinesweeper(LENGTH, HEIGHT, MINES, seed);
+			Minesweeper alone = new Minesweeper(LENGTH, HEIGHT, MINES, seed);		// the same layout, played by one player
+			game.makeMove(HEIGHT/2, LENGTH/2);
+			alone.makeMove(HEIGHT/2, LENGTH/2);
+			final List<Integer> safe = new ArrayList<Integer>();
+			Minesweeper scout = new Minesweeper(LENGTH, HEIGHT, MINES, seed);		// finds the mines by revealing everything
+			scout.makeMove(HEIGHT/2, LENGTH/2);
+			for( int index=0; index<LENGTH*HEIGHT; index++){
+				scout.makeMove(index/LENGTH, index%LENGTH);
+				if( scout.getTile(index/LENGTH, index%LENGTH) != Tile.MINE ) safe.add(index);
+			}
+
+			List<Runnable> players = new ArrayList<Runnable>();
+			for( int p=0; p<PLAYERS; p++){
+				final List<Integer> order = new ArrayList<Integer>(safe);
+				Collections.shuffle(order, new Random(p));
+				players.add(() -> {
+					for( int index : order ) game.makeMove(index/LENGTH, index%LENGTH);
+				});
+			}
+			runTogether(players);
+			for( int index : safe ) alone.makeMove(index/LENGTH, index%LENGTH);
+
+			assertTrue(game.isGameWon(), "seed " + seed);
+			assertFalse(game.isGameLost());
+			for( int i=0; i<HEIGHT; i++){
+				for( int j=0; j<LENGTH; j++){
+					assertEquals(alone.getTile(i, j), game.getTile(i, j), "seed " + seed + " at " + i + "," + j);
+				}
+			}
+		}
+	}
+
+	@Test
+	void flagsFromManyPlayersAddUp() throws InterruptedException {
+		final ConcurrentMinesweeper game = new ConcurrentMinesweeper(LENGTH, HEIGHT, MINES, 1);
+		game.makeMove(0, 0);
+		List<Runnable> players = new ArrayList<Runnable>();
+		for( int p=0; p<PLAYERS; p++){
+			players.add(() -> {
+				for( int k=0; k<10; k++){		// each player toggles every tile an even number of times
+					for( int i=0; i<HEIGHT; i++){
+						for( int j=0; j<LENGTH; j++) game.flag(i, j);
+					}
+				}
+			});
+		}
+		runTogether(players);
+		assertEquals(MINES, game.getMinesLeft());
+		for( int i=0; i<HEIGHT; i++){
+			for( int j=0; j<LENGTH; j++) assertTrue(game.getTile(i, j) != Tile.FLAGGED);
+		}
+		assertFalse(game.isGameWon());
+	}
+
+	@Test
+	void flagsOutsideTheBoardAreIgnored(){
+		ConcurrentMinesweeper game = new ConcurrentMinesweeper(10, 10, 20, 1);
+		int[][] outside = { {-1, 0}, {0, -1}, {0, 10}, {10, 0}, {10, 10}, {Integer.MIN_VALUE, Integer.MAX_VALUE} };
+		for( int[] tile : outside ) game.flag(tile[0], tile[1]);
+		for( int i=0; i<10; i++){
+			for( int j=0; j<10; j++){
+				assertEquals(Tile.UNKNOWN, game.getTile(i, j));
+			}
+		}
+		game.makeMove(5, 5);
+		for( int[] tile : outside ) game.flag(tile[0], tile[1]);
+		assertEquals(20, game.getMinesLeft());
+	}
+}
@@ -0,0 +1,47 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the endless board: the first move is never a mine, and chunks read the same after being evicted and reloaded.
+ * @author Rachel Wiens
+ */
+class EndlessMinesweeperTest {
+
+	@Test
+	void firstMoveIsNeverAMine(){
+		for( long seed=0; seed<2000; seed++){
+			EndlessMinesweeper game = new EndlessMinesweeper(seed, 2000, 16);		// about half of each chunk is mines
+			assertTrue(game.makeMove(20, 20), "seed " + seed);
+		}
+	}
+
+	@Test
+	void clickOnAFlagIsNotTheFirstMove(){
+		for( long seed=0; seed<2000; seed++){
+			EndlessMinesweeper game = new EndlessMinesweeper(seed, 2000, 16);
+			game.flag(3, 3);
+			assertTrue(game.makeMove(3, 3));		// does nothing, since the tile is flagged
+			assertTrue(game.makeMove(20, 20), "seed " + seed);
+		}
+	}
+
+	@Test
+	void evictedChunksAreRestored(){
+		EndlessMinesweeper game = new EndlessMinesweeper(7, 600, 16);
+		game.makeMove(0, 0);
+		for( int k=1; k<200; k++) game.makeMove(k*97, -k*131);		// explore far apart chunks, so the first ones are evicted
+		assertTrue(game.getEvictedChunks() > 0);
+
+		EndlessMinesweeper fresh = new EndlessMinesweeper(7, 600, 1024);
+		fresh.makeMove(0, 0);
+		for( int k=1; k<200; k++) fresh.makeMove(k*97, -k*131);
+		assertEquals(fresh.getTilesRevealed(), game.getTilesRevealed());
+		for( int i=-70; i<70; i++){
+			for( int j=-70; j<70; j++){
+				assertEquals(fresh.getTile(i, j), game.getTile(i, j), i + "," + j);
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that each game's result is counted once, however many moves are made after it ends.
+ * @author Rachel Wiens
+ */
+class GameMetricsTest {
+
+	@Test
+	void movesAfterTheEndAreNotCounted(){
+		GameMetrics metrics = new GameMetrics();
+		Minesweeper game = new Minesweeper(10, 10, 40, 5);
+		game.setMetrics(metrics);
+		int index = 0;
+		while( game.makeMove(index/10, index%10) ) index++;		// reveal tiles in order until one is a mine
+		assertFalse(game.isGameWon());
+		long moves = metrics.getMoves();
+		for( int k=0; k<100; k++){
+			game.makeMove(k/10, k%10);
+			game.flag(k/10, k%10);
+		}
+		assertEquals(1, metrics.getGamesStarted());
+		assertEquals(1, metrics.getGamesLost());
+		assertEquals(0, metrics.getGamesWon());
+		assertEquals(moves, metrics.getMoves());
+		assertEquals(0, metrics.getFlags());
+
+		game.newGame();
+		game.makeMove(0, 0);
+		assertEquals(2, metrics.getGamesStarted());
+		assertEquals(moves + 1, metrics.getMoves());
+	}
+
+	@Test
+	void aWinIsCountedOnce(){
+		GameMetrics metrics = new GameMetrics();
+		Minesweeper game = new Minesweeper(5, 5, 0, 1);
+		game.setMetrics(metrics);
+		assertFalse(game.makeMove(2, 2));		// no mines, so the first move reveals the whole board
+		game.makeMove(0, 0);
+		assertEquals(1, metrics.getGamesWon());
+		assertEquals(0, metrics.getGamesLost());
+	}
+}
@@ -0,0 +1,123 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that games recorded by GameRecorder replay to the same boards, and that GameReplay rejects damaged recordings.
+ * @author Rachel Wiens
+ */
+class GameRecorderTest {
+
+	/**
+	 * Play random games on game, recording them, and return each game's final board.
+	 */
+	private static List<Tile[][]> playGames(Minesweeper game, ByteArrayOutputStream bytes, int games) throws IOException {
+		List<Tile[][]> boards = new ArrayList<Tile[][]>();
+		GameRecorder recorder = new GameRecorder(bytes);
+		game.setRecorder(recorder);
+		SplittableRandom random = new SplittableRandom(11);
+		for( int g=0; g<games; g++){
+			for( int step=0; step<60; step++){
+				int i = random.nextInt(game.getBoardHeight());
+				int j = random.nextInt(game.getBoardLength());
+				if( random.nextInt(4) == 0 ){
+					game.flag(i, j);
+				} else if( !game.makeMove(i, j) ){
+					break;
+				}
+			}
+			if( !game.isFirstMove() ) boards.add(game.getBoard());		// games without a move are not recorded
+			game.newGame();
+		}
+		recorder.close();
+		return boards;
+	}
+
+	private static List<Tile[][]> replay(byte[] recording) throws IOException {
+		final List<Tile[][]> boards = new ArrayList<Tile[][]>();
+		GameReplay replay = new GameReplay(new ByteArrayInputStream(recording));
+		replay.replayAll(new GameReplay.Listener(){
+			public void gameEnded(Minesweeper game){
+				boards.add(game.getBoard());
+			}
+		});
+		return boards;
+	}
+
+	private static void assertSameBoards(List<Tile[][]> expected, List<Tile[][]> actual){
+		assertEquals(expected.size(), actual.size());
+		for( int g=0; g<expected.size(); g++){
+			for( int i=0; i<expected.get(g).length; i++) assertArrayEquals(expected.get(g)[i], actual.get(g)[i], "game " + g + ", row " + i);
+		}
+	}
+
+	@Test
+	void gamesReplayToTheSameBoards() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		List<Tile[][]> played = playGames(new Minesweeper(12, 9, 20, 3), bytes, 300);
+		assertSameBoards(played, replay(bytes.toByteArray()));
+	}
+
+	@Test
+	void pooledGamesReplayToTheSameBoards() throws IOException {
+		BoardPool pool = new BoardPool();
+		try {
+			Minesweeper game = new Minesweeper(12, 9, 20, 3);
+			game.setBoardPool(pool);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			List<Tile[][]> played = playGames(game, bytes, 300);
+			assertSameBoards(played, replay(bytes.toByteArray()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void aRecordingCutOffMidGameEndsThere() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		playGames(new Minesweeper(12, 9, 20, 3), bytes, 20);
+		byte[] recording = bytes.toByteArray();
+		for( int size=0; size<recording.length; size+=7){
+			GameReplay replay = new GameReplay(new ByteArrayInputStream(recording, 0, size));
+			replay.replayAll(null);		// never throws
+			assertTrue(replay.getGames() <= 20);
+		}
+	}
+
+	private static byte[] header(int length, int height, int mines){
+		return new byte[]{ 'G', (byte)length, (byte)height, (byte)mines, 1, 0, 0, 0, 0, 0, 0, 0 };
+	}
+
+	private static void assertDamaged(byte[] recording){
+		GameReplay replay = new GameReplay(new ByteArrayInputStream(recording));
+		assertThrows(IOException.class, () -> replay.replayAll(null));
+	}
+
+	@Test
+	void damagedRecordingsAreRejected() throws IOException {
+		assertDamaged(new byte[]{ 'X' });
+		assertDamaged(header(0, 9, 0));
+		assertDamaged(header(9, 9, 81));		// as many mines as tiles
+		assertDamaged(new byte[]{ 'G', (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 0 });		// 2^35 long
+		byte[] moveOffBoard = { 'G', 9, 9, 10, 1, 0, 0, 0, 0, 0, 0, 0, (byte)(81 << 2 | 1 | 0x80), (byte)(81 >>> 5), 0 };
+		assertDamaged(moveOffBoard);
+		byte[] badAction = { 'G', 9, 9, 10, 1, 0, 0, 0, 0, 0, 0, 0, 3 << 2 | 3, 0 };
+		assertDamaged(badAction);
+
+		GameReplay replay = new GameReplay(new ByteArrayInputStream(new byte[]{ 'G', 9, 9, 10, 1, 0, 0, 0, 0, 0, 0, 0, 20 << 2 | 1, 0 }));
+		assertTrue(replay.nextGame(null));
+		assertFalse(replay.getGame().isFirstMove());
+		assertFalse(replay.nextGame(null));
+	}
+}
@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the Hall of Fame log is read back after closing, and after a crash that tore a record.
+ * @author Rachel Wiens
+ */
+class HallOfFameTest {
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_SIZE = 40;
+
+	@TempDir
+	Path dir;
+
+	private static void addGames(HallOfFame hallOfFame, int from, int to) throws IOException {
+		for( int k=from; k<to; k++) hallOfFame.addGame(10, 10, 20, k, k%3 != 0, 1000 + k);
+	}
+
+	/**
+	 * Change one byte of the game record at index, as a write cut off by a crash would leave it.
+	 */
+	private static void tear(Path file, int index) throws IOException {
+		try( FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE) ){
+			channel.write(ByteBuffer.wrap(new byte[]{ (byte)0xFF }), HEADER_SIZE + (long)index*RECORD_SIZE + 5);
+		}
+	}
+
+	@Test
+	void gamesAreReadBack() throws IOException {
+		Path file = dir.resolve("fame");
+		HallOfFame hallOfFame = new HallOfFame(file, 3, 10);
+		addGames(hallOfFame, 0, 5000);		// more than the first mapping holds, so the log is grown
+		hallOfFame.close();
+
+		HallOfFame reopened = new HallOfFame(file, 3, 10);
+		assertEquals(5000, reopened.getNumberOfGames());
+		assertEquals(hallOfFame.getNumberOfWins(), reopened.getNumberOfWins());
+		List<HallOfFame.Score> leaderboard = reopened.getLeaderboard(10, 10, 20);
+		assertEquals(3, leaderboard.size());
+		assertEquals(1001, leaderboard.get(0).getTimeMillis());
+		assertEquals(1, leaderboard.get(0).getSeed());
+		reopened.close();
+	}
+
+	@Test
+	void recoveryStopsAtATornRecord() throws IOException {
+		Path file = dir.resolve("fame");
+		HallOfFame hallOfFame = new HallOfFame(file, 3, 1);
+		addGames(hallOfFame, 0, 100);
+		hallOfFame.close();
+		tear(file, 50);
+
+		hallOfFame = new HallOfFame(file, 3, 1);
+		assertEquals(50, hallOfFame.getNumberOfGames());
+		addGames(hallOfFame, 100, 105);		// overwrite the torn record and a few after it
+		hallOfFame.close();
+
+		HallOfFame reopened = new HallOfFame(file, 3, 1);		// the records from before the crash after those are gone
+		assertEquals(55, reopened.getNumberOfGames());
+		reopened.close();
+	}
+}
@@ -0,0 +1,324 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the game through its public methods: the incremental win check against a scan of the whole board, which is
+ * how it used to be worked out, undo and redo, snapshots, and saving and loading.
+ * @author Rachel Wiens
+ */
+class MinesweeperTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Where the mines are in a game with seed whose first move was at row, col, found by revealing every tile of
+	 * another game with the same layout. A game carries on revealing after a mine is hit, so every tile can be.
+	 */
+	private static boolean[][] mines(int length, int height, int mines, long seed, int row, int col){
+		Minesweeper copy = new Minesweeper(length, height, mines, seed);
+		copy.makeMove(row, col);
+		boolean[][] isMine = new boolean[height][length];
+		for( int i=0; i<height; i++){
+			for( int j=0; j<length; j++){
+				copy.makeMove(i, j);
+				isMine[i][j] = copy.getTile(i, j) == Tile.MINE;
+			}
+		}
+		return isMine;
+	}
+
+	/**
+	 * True if every tile that is not a mine has been revealed or flagged.
+	 */
+	private static boolean scanGameWon(Minesweeper game, boolean[][] isMine){
+		for( int i=0; i<game.getBoardHeight(); i++){
+			for( int j=0; j<game.getBoardLength(); j++){
+				if( game.getTile(i, j) == Tile.UNKNOWN && !isMine[i][j] ) return false;
+			}
+		}
+		return true;
+	}
+
+	private static void assertSameGame(Minesweeper expected, Minesweeper actual, String message){
+		Tile[][] board = expected.getBoard();
+		Tile[][] other = actual.getBoard();
+		for( int i=0; i<board.length; i++) assertArrayEquals(board[i], other[i], message + ", row " + i);
+		assertEquals(expected.getMinesLeft(), actual.getMinesLeft(), message);
+		assertEquals(expected.isGameWon(), actual.isGameWon(), message);
+		assertEquals(expected.isFirstMove(), actual.isFirstMove(), message);
+	}
+
+	/**
+	 * Make a random move or flag. Moves after a mine has been hit are fine, since the game still takes them.
+	 */
+	private static void randomStep(Minesweeper game, SplittableRandom random){
+		int i = random.nextInt(game.getBoardHeight());
+		int j = random.nextInt(game.getBoardLength());
+		if( random.nextInt(4) == 0 ){
+			game.flag(i, j);
+		} else {
+			game.makeMove(i, j);
+		}
+	}
+
+	@Test
+	void isGameWonMatchesFullScan(){
+		SplittableRandom random = new SplittableRandom(3);
+		for( int g=0; g<2000; g++){
+			int length = 1 + random.nextInt(12);
+			int height = 1 + random.nextInt(12);
+			int mines = random.nextInt(length*height);
+			Minesweeper game = new Minesweeper(length, height, mines, random.nextLong());
+			game.setUndoable(random.nextBoolean());
+			boolean[][] isMine = null;
+			boolean playing = true;
+			for( int step=0; step<200 && playing; step++){
+				int i = random.nextInt(height);
+				int j = random.nextInt(length);
+				int action = random.nextInt(10);
+				if( action < 3 ){
+					game.flag(i, j);
+				} else if( action == 3 && game.canUndo() ){
+					game.undo();
+				} else if( action == 4 && game.canRedo() ){
+					game.redo();
+				} else if( action == 5 && random.nextInt(20) == 0 ){
+					game.newGame();
+				} else {
+					boolean first = game.isFirstMove();
+					playing = game.makeMove(i, j);
+					if( first && !game.isFirstMove() ) isMine = mines(length, height, mines, game.getSeed(), i, j);
+				}
+				if( game.isFirstMove() ) continue;		// the mines are not placed yet
+				assertEquals(scanGameWon(game, isMine), game.isGameWon(), "game " + g + ", step " + step);
+			}
+		}
+	}
+
+	@Test
+	void undoAndRedoRetraceTheGame(){
+		SplittableRandom random = new SplittableRandom(5);
+		for( int g=0; g<200; g++){
+			Minesweeper game = new Minesweeper(9, 7, 10, random.nextLong());
+			game.setUndoable(true);
+			List<Tile[][]> boards = new ArrayList<Tile[][]>();
+			List<Integer> minesLeft = new ArrayList<Integer>();
+			boards.add(game.getBoard());
+			minesLeft.add(game.getMinesLeft());
+			for( int step=0; step<40; step++){
+				randomStep(game, random);
+				if( game.getLastMove().size() == 0 ) continue;		// nothing changed, so nothing to undo
+				boards.add(game.getBoard());
+				minesLeft.add(game.getMinesLeft());
+			}
+			for( int k=boards.size()-2; k>=0; k--){
+				assertTrue(game.undo());
+				assertArrayEquals(boards.get(k), game.getBoard(), "game " + g + ", undo to " + k);
+				assertEquals((int)minesLeft.get(k), game.getMinesLeft());
+			}
+			assertFalse(game.undo());
+			assertTrue(game.isFirstMove());
+			for( int k=1; k<boards.size(); k++){
+				assertTrue(game.redo());
+				assertArrayEquals(boards.get(k), game.getBoard(), "game " + g + ", redo to " + k);
+			}
+			assertFalse(game.redo());
+		}
+	}
+
+	@Test
+	void undoIsRefusedWhileRecording(){
+		Minesweeper game = new Minesweeper(9, 7, 10, 1);
+		game.setUndoable(true);
+		game.setRecorder(new GameRecorder(new ByteArrayOutputStream()));
+		game.makeMove(3, 3);
+		assertFalse(game.canUndo());
+		assertFalse(game.undo());
+	}
+
+	@Test
+	void restoreReturnsToTheSnapshot(){
+		SplittableRandom random = new SplittableRandom(7);
+		for( int g=0; g<200; g++){
+			long seed = random.nextLong();
+			Minesweeper game = new Minesweeper(20, 15, 40, seed);
+			Minesweeper same = new Minesweeper(20, 15, 40, seed);		// played the same way, without snapshots
+			int steps = random.nextInt(30);
+			for( int step=0; step<steps; step++){
+				long stepSeed = random.nextLong();
+				randomStep(game, new SplittableRandom(stepSeed));
+				randomStep(same, new SplittableRandom(stepSeed));
+			}
+			game.setTime(1234);
+			GameState state = game.snapshot();
+			for( int step=0; step<30; step++) randomStep(game, random);
+			if( random.nextBoolean() ){		// another layout, so restore must place the snapshot's mines again
+				game.newGame();
+				for( int step=0; step<10; step++) randomStep(game, random);
+			}
+			game.restore(state);
+			assertEquals(1234, game.getTime());
+			assertEquals(same.getSeed(), game.getSeed());
+			assertSameGame(same, game, "game " + g + " restored");
+			for( int step=0; step<30; step++){		// the mines are where they were, so play carries on the same
+				long stepSeed = random.nextLong();
+				randomStep(game, new SplittableRandom(stepSeed));
+				randomStep(same, new SplittableRandom(stepSeed));
+				assertSameGame(same, game, "game " + g + ", step " + step + " after restore");
+			}
+		}
+	}
+
+	@Test
+	void restoreRejectsAnotherBoard(){
+		GameState state = new Minesweeper(9, 7, 10, 1).snapshot();
+		assertThrows(IllegalArgumentException.class, () -> new Minesweeper(7, 9, 10, 1).restore(state));
+	}
+
+	@Test
+	void loadedGamesPlayOnTheSame() throws IOException {
+		SplittableRandom random = new SplittableRandom(9);
+		Path file = dir.resolve("game.sav");
+		for( int g=0; g<100; g++){
+			int length = 1 + random.nextInt(40);
+			int height = 1 + random.nextInt(40);
+			Minesweeper game = new Minesweeper(length, height, random.nextInt(length*height), random.nextLong());
+			int steps = random.nextInt(20);		// sometimes none, so the game is saved before its first move
+			for( int step=0; step<steps; step++) randomStep(game, random);
+			game.setTime(random.nextInt(100000));
+			game.save(file);
+			byte[] saved = Files.readAllBytes(file);
+
+			Minesweeper loaded = Minesweeper.load(file);
+			assertEquals(game.getSeed(), loaded.getSeed());
+			assertEquals(game.getTime(), loaded.getTime());
+			assertEquals(game.getNumMines(), loaded.getNumMines());
+			assertSameGame(game, loaded, "game " + g + " loaded");
+			for( int step=0; step<40; step++){
+				long stepSeed = random.nextLong();
+				randomStep(game, new SplittableRandom(stepSeed));
+				randomStep(loaded, new SplittableRandom(stepSeed));
+				assertSameGame(game, loaded, "game " + g + ", step " + step + " after loading");
+			}
+			assertArrayEquals(saved, Files.readAllBytes(file), "game " + g + " changed its saved file");
+			loaded.save(file);		// replaces the file the loaded game is mapped from
+			assertSameGame(loaded, Minesweeper.load(file), "game " + g + " saved again");
+		}
+	}
+
+	@Test
+	void damagedSavesAreRejected() throws IOException {
+		Path file = dir.resolve("game.sav");
+		Minesweeper game = new Minesweeper(10, 10, 20, 1);
+		game.makeMove(5, 5);
+		game.save(file);
+		long size = Files.size(file);
+
+		try( FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE) ){
+			channel.truncate(size - 1);
+		}
+		assertThrows(IOException.class, () -> Minesweeper.load(file));
+
+		game.save(file);
+		try( FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE) ){
+			channel.write(ByteBuffer.wrap(new byte[]{ 'X' }), 0);
+		}
+		assertThrows(IOException.class, () -> Minesweeper.load(file));
+
+		game.save(file);
+		try( FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE) ){
+			channel.write(ByteBuffer.wrap(new byte[]{ 100 }), 16);		// more mines than tiles
+		}
+		assertThrows(IOException.class, () -> Minesweeper.load(file));
+	}
+
+	@Test
+	void openedGamesPlayLikeGamesOnTheHeap() throws IOException {
+		SplittableRandom random = new SplittableRandom(11);
+		for( int g=0; g<50; g++){
+			int length = 1 + random.nextInt(40);
+			int height = 1 + random.nextInt(40);
+			int mines = random.nextInt(length*height);
+			long seed = random.nextLong();
+			Path file = dir.resolve("open" + g + ".sav");
+			Minesweeper game = new Minesweeper(length, height, mines, seed);
+			Minesweeper opened = Minesweeper.open(file, length, height, mines, seed);
+			for( int step=0; step<60; step++){
+				long stepSeed = random.nextLong();
+				randomStep(game, new SplittableRandom(stepSeed));
+				randomStep(opened, new SplittableRandom(stepSeed));
+				assertSameGame(game, opened, "game " + g + ", step " + step);
+			}
+			if( random.nextBoolean() ){
+				game.newGame();
+				opened.newGame();
+				assertSameGame(game, opened, "game " + g + " after newGame");
+			}
+		}
+	}
+
+	@Test
+	void openReopensTheGameInTheFile() throws IOException {
+		Path file = dir.resolve("game.board");
+		Minesweeper game = Minesweeper.open(file, 30, 20, 60, 3);
+		game.makeMove(10, 10);
+		game.flag(0, 0);
+		game.setTime(4321);
+		game.force();
+		long size = Files.size(file);
+
+		Minesweeper reopened = Minesweeper.open(file, 30, 20, 60, 99);		// the seed is only for a new game
+		assertEquals(size, Files.size(file));
+		assertEquals(game.getSeed(), reopened.getSeed());
+		assertEquals(4321, reopened.getTime());
+		assertSameGame(game, reopened, "reopened");
+		Minesweeper loaded = Minesweeper.load(file);		// a game's file is also a saved game
+		assertSameGame(game, loaded, "loaded");
+
+		for( int step=0; step<40; step++){		// the mines are in the file too
+			int i = step % 20;
+			int j = (7*step) % 30;
+			game.makeMove(i, j);
+			loaded.makeMove(i, j);
+			assertSameGame(loaded, game, "step " + step);
+		}
+		assertThrows(IOException.class, () -> Minesweeper.open(file, 20, 30, 60, 3));
+	}
+
+	@Test
+	void openedGamesSaveAndLoad() throws IOException {
+		Minesweeper game = Minesweeper.open(dir.resolve("game.board"), 25, 15, 50, 8);
+		game.makeMove(7, 7);
+		Path file = dir.resolve("game.sav");
+		game.save(file);
+		assertSameGame(game, Minesweeper.load(file), "saved from a file");
+
+		Minesweeper heap = new Minesweeper(25, 15, 50, 8);
+		heap.makeMove(7, 7);
+		heap.flag(1, 1);
+		Path opened = dir.resolve("heap.board");
+		heap.save(opened);
+		Minesweeper reopened = Minesweeper.open(opened, 25, 15, 50, 0);
+		assertSameGame(heap, reopened, "saved game opened");
+		reopened.save(opened);		// its own file, so nothing to copy
+		assertSameGame(heap, Minesweeper.load(opened), "saved to its own file");
+	}
+}